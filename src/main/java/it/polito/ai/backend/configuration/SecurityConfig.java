@@ -59,6 +59,8 @@ public class SecurityConfig extends WebSecurityConfigurerAdapter {
                 .antMatchers("/auth/**").permitAll()
                 .antMatchers("/API/notifications/**").permitAll()
                 .antMatchers("/API/**").authenticated()
+                .antMatchers("/actuator/health").permitAll()
+                .antMatchers("/actuator/**").authenticated()
                 .and()
                 .exceptionHandling()
                 .authenticationEntryPoint(jwtAuthenticationEntryPoint)
@@ -9,28 +9,42 @@ import it.polito.ai.backend.dtos.PaperStatus;
 import it.polito.ai.backend.services.team.CourseNotFoundException;
 
 import it.polito.ai.backend.services.team.TeamService;
-import org.apache.tika.exception.TikaException;
+import it.polito.ai.backend.services.image.ImageService;
+import it.polito.ai.backend.services.media.MediaInspectionService;
+import it.polito.ai.backend.services.upload.UploadService;
+import it.polito.ai.backend.services.upload.UploadSessionNotFoundException;
 import org.apache.tika.io.IOUtils;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.Resource;
 import org.springframework.hateoas.CollectionModel;
 import org.springframework.hateoas.Link;
 import org.springframework.hateoas.server.mvc.WebMvcLinkBuilder;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.async.WebAsyncTask;
+import org.springframework.web.context.request.WebRequest;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.multipart.MultipartHttpServletRequest;
 import org.springframework.web.server.ResponseStatusException;
 
 import javax.servlet.http.HttpServletResponse;
 import javax.validation.Valid;
 import javax.validation.constraints.NotBlank;
+import javax.validation.constraints.NotEmpty;
 import javax.validation.constraints.NotNull;
+import javax.validation.constraints.Size;
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.time.Duration;
 import java.util.*;
 import java.util.stream.Collectors;
 
@@ -43,6 +57,15 @@ public class AssignmentController {
     TeamService teamService;
     @Autowired
     AssignmentService assignmentService;
+    @Autowired
+    ImageService imageService;
+    @Autowired
+    MediaInspectionService mediaInspectionService;
+    @Autowired
+    UploadService uploadService;
+
+    @Value("${assignment.archive.timeout:30m}")
+    Duration archiveTimeout;
 
     @Operation(summary = "get assignment")
     @GetMapping("/{assignmentId}")
@@ -54,20 +77,58 @@ public class AssignmentController {
         return new ResponseEntity<>(ModelHelper.enrich(assignmentDTO, courseId), HttpStatus.OK);
     }
 
+    @Operation(summary = "get the image of an assignment")
+    @GetMapping("/{assignmentId}/image")
+    ResponseEntity<Resource> getImage(@PathVariable @NotNull Long assignmentId, WebRequest request) {
+        AssignmentDTO assignmentDTO = assignmentService.getAssignment(assignmentId)
+                .orElseThrow(() -> new AssignmentNotFoundException(assignmentId.toString()));
+        return ImageResponse.cached(assignmentDTO.getImageId(), request, imageService);
+    }
+
+    @Operation(summary = "get the downscaled image of an assignment")
+    @GetMapping("/{assignmentId}/preview")
+    ResponseEntity<Resource> getPreview(@PathVariable @NotNull Long assignmentId, WebRequest request) {
+        AssignmentDTO assignmentDTO = assignmentService.getAssignment(assignmentId)
+                .orElseThrow(() -> new AssignmentNotFoundException(assignmentId.toString()));
+        return ImageResponse.preview(assignmentDTO.getImageId(), assignmentDTO.isPreview(), request, imageService);
+    }
+
     @Operation(summary = "get the last papers of an assignment")
     @GetMapping("/{assignmentId}/papers")
     ResponseEntity<CollectionModel<PaperDTO>> getLastPapers(@PathVariable @NotNull Long assignmentId ){
         List<PaperDTO> lastPapers = assignmentService.getLastPapers(assignmentId)
-                .stream().map(a -> {
-                    String studentId = assignmentService.getStudentForPaper(a.getId()).map(StudentDTO::getId)
-                            .orElse(null);
-                    return ModelHelper.enrich(a,studentId,assignmentId);
-                }).collect(Collectors.toList());
+                .stream().map(a -> ModelHelper.enrich(a,a.getStudentId(),assignmentId))
+                .collect(Collectors.toList());
         Link selfLink = WebMvcLinkBuilder.linkTo(WebMvcLinkBuilder.methodOn(AssignmentController.class).getLastPapers(assignmentId)).withSelfRel();
 
         return new ResponseEntity<>(CollectionModel.of(lastPapers,selfLink), HttpStatus.OK);
     }
 
+    @Operation(summary = "get a zip with the image of the last paper of each student")
+    @GetMapping("/{assignmentId}/papers/archive")
+    WebAsyncTask<Void> getPapersArchive(@PathVariable @NotNull Long assignmentId, HttpServletResponse response) {
+        // only the ids are listed here, the contents are read one by one while the zip is written
+        Map<String, String> images = new LinkedHashMap<>();
+        assignmentService.getLastPapers(assignmentId).stream()
+                .filter(p -> p.getImageId() != null)
+                .forEach(p -> images.put(p.getStudentId() + "_" + p.getId(), p.getImageId()));
+        // written on the async executor, with a timeout longer than the default one for this response only
+        return new WebAsyncTask<>(archiveTimeout.toMillis(), () -> {
+            response.setContentType("application/zip");
+            response.setHeader(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.builder("attachment")
+                    .filename("assignment-" + assignmentId + ".zip").build().toString());
+            imageService.writeZip(images, response.getOutputStream());
+            response.flushBuffer();
+            return null;
+        });
+    }
+
+    @Operation(summary = "get how many current papers of an assignment are in each state and how many are flagged")
+    @GetMapping("/{assignmentId}/stats")
+    ResponseEntity<AssignmentStatsDTO> getStats(@PathVariable @NotNull Long assignmentId) {
+        return new ResponseEntity<>(ModelHelper.enrich(assignmentService.getStats(assignmentId), assignmentId), HttpStatus.OK);
+    }
+
     @Operation(summary = "get the papers history of an assignment")
     @GetMapping("/{assignmentId}/papers/history")
     ResponseEntity<CollectionModel<PaperDTO>> getHistoryPapers(@PathVariable @NotNull Long assignmentId, @RequestParam @NotBlank String studentId){
@@ -81,9 +142,6 @@ public class AssignmentController {
                 .stream().map(a -> ModelHelper.enrich(a,studentId,assignmentId)
                 ).collect(Collectors.toList());
         Link selfLink = WebMvcLinkBuilder.linkTo(WebMvcLinkBuilder.methodOn(AssignmentController.class).getHistoryPapers(assignmentId,studentId)).withSelfRel();
-        for (PaperDTO p:paperDTOS) { System.out.println(p.getId());
-
-        }
         return new ResponseEntity<>(CollectionModel.of(paperDTOS,selfLink), HttpStatus.OK);
 
     }
@@ -100,24 +158,91 @@ public class AssignmentController {
     void submitAssignment(@RequestParam("image") MultipartFile file, @PathVariable @NotBlank String studentId, @PathVariable @NotNull Long assignmentId){
 
         try {
-            Utils.checkTypeImage(file);
+            mediaInspectionService.checkImage(file);
             if(assignmentService.checkPaper(assignmentId,studentId))
-                assignmentService.addPaperByte(Utils.getNow(), PaperStatus.DELIVERED,false,null,Utils.getBytes(file),studentId,assignmentId);
+                assignmentService.addPaper(Utils.getNow(), PaperStatus.DELIVERED,false,null,file,studentId,assignmentId);
             else
                 throw new ResponseStatusException(HttpStatus.CONFLICT, "There is already a delivered paper for this assignment with id: "+assignmentId.toString());
-        } catch (TikaException | IOException e) {
+        } catch (IOException e) {
+            e.printStackTrace();
+            throw new ResponseStatusException(HttpStatus.UNSUPPORTED_MEDIA_TYPE, "invalid file content");
+        }
+
+
+    }
+
+    @Operation(summary = "start a chunked upload of a paper")
+    @PostMapping("/{assignmentId}/students/{studentId}/uploads")
+    ResponseEntity<UploadSessionDTO> openUpload(@RequestBody @Valid UploadRequest request, @PathVariable @NotBlank String studentId, @PathVariable @NotNull Long assignmentId) {
+        try {
+            if(!assignmentService.checkPaper(assignmentId,studentId))
+                throw new ResponseStatusException(HttpStatus.CONFLICT, "There is already a delivered paper for this assignment with id: "+assignmentId.toString());
+            UploadSessionDTO uploadSessionDTO = uploadService.open(assignmentId, studentId, request.getSize());
+            return new ResponseEntity<>(ModelHelper.enrich(uploadSessionDTO, assignmentId, studentId), HttpStatus.CREATED);
+        } catch (IOException e) {
+            e.printStackTrace();
+            throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, "unable to start the upload");
+        }
+    }
+
+    @Operation(summary = "get the bytes received by a chunked upload")
+    @GetMapping("/{assignmentId}/students/{studentId}/uploads/{uploadId}")
+    ResponseEntity<UploadSessionDTO> getUpload(@PathVariable @NotNull Long assignmentId, @PathVariable @NotBlank String studentId, @PathVariable @NotBlank String uploadId) {
+        UploadSessionDTO uploadSessionDTO = uploadService.getSession(assignmentId, studentId, uploadId)
+                .orElseThrow(() -> new UploadSessionNotFoundException(uploadId));
+        return new ResponseEntity<>(ModelHelper.enrich(uploadSessionDTO, assignmentId, studentId), HttpStatus.OK);
+    }
+
+    @Operation(summary = "send a chunk of a paper, starting from the bytes already received")
+    @PutMapping(value = "/{assignmentId}/students/{studentId}/uploads/{uploadId}", consumes = MediaType.APPLICATION_OCTET_STREAM_VALUE)
+    ResponseEntity<UploadSessionDTO> appendUpload(@RequestParam long offset, InputStream chunk, @PathVariable @NotNull Long assignmentId, @PathVariable @NotBlank String studentId, @PathVariable @NotBlank String uploadId) {
+        try {
+            UploadSessionDTO uploadSessionDTO = uploadService.append(assignmentId, studentId, uploadId, offset, chunk);
+            return new ResponseEntity<>(ModelHelper.enrich(uploadSessionDTO, assignmentId, studentId), HttpStatus.OK);
+        } catch (IOException e) {
+            e.printStackTrace();
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "chunk interrupted, resume from the received bytes");
+        }
+    }
+
+    @Operation(summary = "create a new paper from a completed chunked upload")
+    @PostMapping("/{assignmentId}/students/{studentId}/uploads/{uploadId}/commit")
+    ResponseEntity<Void> commitUpload(@PathVariable @NotNull Long assignmentId, @PathVariable @NotBlank String studentId, @PathVariable @NotBlank String uploadId) {
+        try {
+            Resource content = uploadService.getContent(assignmentId, studentId, uploadId);
+            mediaInspectionService.checkImage(content, content.contentLength(), null);
+            if(!assignmentService.checkPaper(assignmentId,studentId))
+                throw new ResponseStatusException(HttpStatus.CONFLICT, "There is already a delivered paper for this assignment with id: "+assignmentId.toString());
+            assignmentService.addPaper(Utils.getNow(), PaperStatus.DELIVERED,false,null,content,studentId,assignmentId);
+            uploadService.close(assignmentId, studentId, uploadId);
+            return ResponseEntity.noContent().build();
+        } catch (IOException e) {
             e.printStackTrace();
             throw new ResponseStatusException(HttpStatus.UNSUPPORTED_MEDIA_TYPE, "invalid file content");
         }
+    }
 
+    @Operation(summary = "abort a chunked upload")
+    @DeleteMapping("/{assignmentId}/students/{studentId}/uploads/{uploadId}")
+    void deleteUpload(@PathVariable @NotNull Long assignmentId, @PathVariable @NotBlank String studentId, @PathVariable @NotBlank String uploadId) {
+        uploadService.close(assignmentId, studentId, uploadId);
+    }
 
+    @Operation(summary = "add the reviews of many papers by the teacher in one request, each review may name the part holding its image")
+    @PostMapping("/{assignmentId}/paperReviews")
+    List<PaperReviewResult> reviewAssignments(@RequestPart("reviews") @NotEmpty @Size(max = 1000) List<@Valid PaperReviewRequest> reviews,
+                                              MultipartHttpServletRequest request, @PathVariable @NotNull Long assignmentId) {
+        // the parts are checked by the service, an invalid one fails only the entries naming it
+        Map<String, MultipartFile> images = new HashMap<>(request.getFileMap());
+        images.remove("reviews");
+        return assignmentService.reviewPapers(assignmentId, reviews, images);
     }
 
     @Operation(summary = "add a review for a paper by the teacher")
     @PostMapping("/{assignmentId}/paperReview")
     void reviewAssignment(@RequestPart("image") MultipartFile file, @RequestPart @Valid PaperRequest request, @PathVariable @NotNull Long assignmentId){
         try {
-            Utils.checkTypeImage(file);
+            mediaInspectionService.checkImage(file);
             Optional<AssignmentDTO> assignmentDTO = assignmentService.getAssignment(assignmentId);
             if(!assignmentDTO.isPresent())
                 throw  new AssignmentNotFoundException("Assignment: "+assignmentId.toString()+" not found");
@@ -146,11 +271,11 @@ public class AssignmentController {
                 throw new PaperNotFoundException("The student "+studentId +"not update an paper to be reviewed");
 
 
-            assignmentService.addPaperByte(Utils.getNow(), PaperStatus.REVISED,
-                            flag,request.getScore(),Utils.getBytes(file),studentId,assignmentId);
+            assignmentService.addPaper(Utils.getNow(), PaperStatus.REVISED,
+                            flag,request.getScore(),file,studentId,assignmentId);
 
 
-        } catch (TikaException | IOException e) {
+        } catch (IOException e) {
             e.printStackTrace();
             throw new ResponseStatusException(HttpStatus.UNSUPPORTED_MEDIA_TYPE, "invalid file content");
         }
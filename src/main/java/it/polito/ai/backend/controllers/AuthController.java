@@ -10,8 +10,7 @@ import it.polito.ai.backend.dtos.UserInformationRequest;
 import it.polito.ai.backend.security.CustomUserDetailsService;
 import it.polito.ai.backend.security.JwtTokenProvider;
 
-import it.polito.ai.backend.services.Utils;
-import org.apache.tika.exception.TikaException;
+import it.polito.ai.backend.services.media.MediaInspectionService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
@@ -45,6 +44,9 @@ public class AuthController {
     @Autowired
     CustomUserDetailsService customUserDetailsService;
 
+    @Autowired
+    MediaInspectionService mediaInspectionService;
+
     @Operation(summary = "Login ")
     @PostMapping("/sign-in")
     public ResponseEntity signIn(@RequestBody @Valid AuthenticationRequest data){
@@ -67,13 +69,13 @@ public class AuthController {
     @PostMapping("/sign-up")
     public void signUp(@RequestPart("user") @Valid UserInformationRequest user, @RequestPart("image")MultipartFile file) {
         try {
-            Utils.checkTypeImage(file);
-            customUserDetailsService.signUpUser(user,Utils.getBytes(file));
+            mediaInspectionService.checkImage(file);
+            customUserDetailsService.signUpUser(user,file);
 
 
         } catch (AuthenticationException e) {
             throw new BadCredentialsException("Invalid username/password supplied");
-        } catch (TikaException | IOException e) {
+        } catch (IOException e) {
             e.printStackTrace();
             throw new ResponseStatusException(HttpStatus.UNSUPPORTED_MEDIA_TYPE, "invalid file content");
         }
@@ -98,7 +100,9 @@ public class AuthController {
     public ResponseEntity<?> refreshToken(HttpServletRequest request) throws Exception {
         // From the HttpRequest get the claims
         String tokenold= jwtTokenProvider.resolveToken(request);
-        Claims claims = jwtTokenProvider.getAllClaimsFromToken(tokenold);
+        Claims claims = (Claims) request.getAttribute("claims");
+        if (claims == null)
+            claims = jwtTokenProvider.getAllClaimsFromToken(tokenold);
 
 
         Map<String, Object> expectedMap = getMapFromIoJsonwebtokenClaims(claims);
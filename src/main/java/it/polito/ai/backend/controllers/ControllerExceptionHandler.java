@@ -5,8 +5,12 @@ import it.polito.ai.backend.security.InvalidUsernameException;
 import it.polito.ai.backend.security.SecurityServiceException;
 import it.polito.ai.backend.services.assignment.PaperNotFoundException;
 import it.polito.ai.backend.services.assignment.AssignmentNotFoundException;
+import it.polito.ai.backend.services.image.ImageNotFoundException;
 import it.polito.ai.backend.services.assignment.InvalidScore;
 import it.polito.ai.backend.services.team.TeamServiceBadRequestException;
+import it.polito.ai.backend.services.upload.UploadConflictException;
+import it.polito.ai.backend.services.upload.UploadSessionNotFoundException;
+import it.polito.ai.backend.services.upload.UploadSizeException;
 import it.polito.ai.backend.services.team.TeamServiceConflictException;
 import it.polito.ai.backend.services.team.TeamServiceNotFoundException;
 import it.polito.ai.backend.services.vm.VirtualMachineServiceBadRequestException;
@@ -28,7 +32,9 @@ public class ControllerExceptionHandler extends ResponseEntityExceptionHandler {
     @ExceptionHandler({TeamServiceNotFoundException.class,
             VirtualMachineServiceNotFoundException.class,
             PaperNotFoundException.class,
-            AssignmentNotFoundException.class})
+            AssignmentNotFoundException.class,
+            ImageNotFoundException.class,
+            UploadSessionNotFoundException.class})
     @ResponseStatus(HttpStatus.NOT_FOUND)
     ResponseEntity<String> handleNotFoundException(RuntimeException runtimeException) {
         return new ResponseEntity<>(runtimeException.getMessage(), HttpStatus.NOT_FOUND);
@@ -36,7 +42,8 @@ public class ControllerExceptionHandler extends ResponseEntityExceptionHandler {
 
     @ExceptionHandler({TeamServiceConflictException.class,
             VirtualMachineServiceConflictException.class,
-            DuplicateConfirmationToken.class})
+            DuplicateConfirmationToken.class,
+            UploadConflictException.class})
     @ResponseStatus(HttpStatus.CONFLICT)
     ResponseEntity<String> handleConflictException(RuntimeException runtimeException) {
         return new ResponseEntity<>(runtimeException.getMessage(), HttpStatus.CONFLICT);
@@ -54,6 +61,12 @@ public class ControllerExceptionHandler extends ResponseEntityExceptionHandler {
         return new ResponseEntity<>(runtimeException.getMessage(), HttpStatus.BAD_REQUEST);
     }
 
+    @ExceptionHandler({UploadSizeException.class})
+    @ResponseStatus(HttpStatus.PAYLOAD_TOO_LARGE)
+    ResponseEntity<String> handleSizeException(RuntimeException runtimeException) {
+        return new ResponseEntity<>(runtimeException.getMessage(), HttpStatus.PAYLOAD_TOO_LARGE);
+    }
+
     @ExceptionHandler({SecurityServiceException.class,
             InvalidUsernameException.class,})
     @ResponseStatus(HttpStatus.UNAUTHORIZED)
@@ -8,14 +8,10 @@ import it.polito.ai.backend.entities.TeamStatus;
 import it.polito.ai.backend.services.Utils;
 import it.polito.ai.backend.services.assignment.AssignmentService;
 import it.polito.ai.backend.services.notification.NotificationService;
+import it.polito.ai.backend.services.media.MediaInspectionService;
 import it.polito.ai.backend.services.team.*;
 import it.polito.ai.backend.services.vm.VirtualMachineService;
 import net.minidev.json.JSONObject;
-import org.apache.tika.config.TikaConfig;
-import org.apache.tika.exception.TikaException;
-import org.apache.tika.io.TikaInputStream;
-import org.apache.tika.metadata.Metadata;
-import org.apache.tika.mime.MediaType;
 import org.modelmapper.ModelMapper;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.hateoas.CollectionModel;
@@ -55,6 +51,8 @@ public class CourseController {
     VirtualMachineService virtualMachineService;
     @Autowired
     ModelMapper modelMapper;
+    @Autowired
+    MediaInspectionService mediaInspectionService;
 
 
     @Operation(summary = "get course")
@@ -182,12 +180,7 @@ public class CourseController {
         if (!teamService.addStudentToCourse(studentId, courseId)) {
             throw new ResponseStatusException(HttpStatus.CONFLICT, String.format("student %s already inserted", studentId));
         }
-        assignmentService.getAssignmentsForCourse(courseId).forEach(
-                assignmentDTO -> {
-                    if(assignmentDTO.getExpired().after(Utils.getNow()))
-                    assignmentService.setPapersNullForAssignment(assignmentDTO.getId());
-                }
-        );
+        assignmentService.setPapersNullForStudents(courseId, Collections.singletonList(studentId));
 
 
     }
@@ -230,31 +223,20 @@ public class CourseController {
         }
 
         try {
-            TikaConfig tika = new TikaConfig();
-            Metadata metadata = new Metadata();
-            metadata.set(Metadata.RESOURCE_NAME_KEY, file.getOriginalFilename());
-            MediaType mimeType = tika.getDetector().detect(TikaInputStream.get(file.getBytes()), metadata);
-            String type = mimeType.toString();
-            if (!type.equalsIgnoreCase("text/csv")) {
-                throw new ResponseStatusException(HttpStatus.UNSUPPORTED_MEDIA_TYPE, type);
-            }
+            mediaInspectionService.checkCsv(file);
 
             List<Boolean> addedAndEnrolledStudents = new ArrayList<>();
 
             if (!file.isEmpty()) {
                 Reader reader = new BufferedReader(new InputStreamReader(file.getInputStream()));
                 addedAndEnrolledStudents = teamService.addAndEnroll(reader, courseId);
-                assignmentService.getAssignmentsForCourse(courseId).forEach(
-                        assignmentDTO -> {
-                            if(assignmentDTO.getExpired().after(Utils.getNow()))
-                                assignmentService.setPapersNullForAssignment(assignmentDTO.getId());
-                        }
-                );
+                List<String> studentIds = readStudents(file).stream().map(StudentDTO::getId).collect(Collectors.toList());
+                assignmentService.setPapersNullForStudents(courseId, enrolled(studentIds, addedAndEnrolledStudents));
 
             }
 
             return addedAndEnrolledStudents;
-        } catch (TikaException | IOException e) {
+        } catch (IOException e) {
             e.printStackTrace();
             throw new ResponseStatusException(HttpStatus.UNSUPPORTED_MEDIA_TYPE, "invalid file content");
         }
@@ -271,36 +253,18 @@ public class CourseController {
         }
 
         try {
-            TikaConfig tika = new TikaConfig();
-            Metadata metadata = new Metadata();
-            metadata.set(Metadata.RESOURCE_NAME_KEY, file.getOriginalFilename());
-            MediaType mimeType = tika.getDetector().detect(TikaInputStream.get(file.getBytes()), metadata);
-            String type = mimeType.toString();
-            if (!type.equalsIgnoreCase("text/csv")) {
-                throw new ResponseStatusException(HttpStatus.UNSUPPORTED_MEDIA_TYPE, type);
-            }
+            mediaInspectionService.checkCsv(file);
 
             List<Boolean> enrolledStudents = new ArrayList<>();
 
             if (!file.isEmpty()) {
-                Reader reader = new BufferedReader(new InputStreamReader(file.getInputStream()));
-                CsvToBean<StudentDTO> csvToBean = new CsvToBeanBuilder(reader)
-                        .withType(StudentDTO.class)
-                        .withIgnoreLeadingWhiteSpace(true)
-                        .build();
-                List<StudentDTO> students = csvToBean.parse();
-                List<String> studentIds = students.stream().map(StudentDTO::getId).collect(Collectors.toList());
+                List<String> studentIds = readStudents(file).stream().map(StudentDTO::getId).collect(Collectors.toList());
                 enrolledStudents = teamService.enrollAll(studentIds, courseId);
-                assignmentService.getAssignmentsForCourse(courseId).forEach(
-                        assignmentDTO -> {
-                            if(assignmentDTO.getExpired().after(Utils.getNow()))
-                                assignmentService.setPapersNullForAssignment(assignmentDTO.getId());
-                        }
-                );
+                assignmentService.setPapersNullForStudents(courseId, enrolled(studentIds, enrolledStudents));
             }
 
             return enrolledStudents;
-        } catch (TikaException | IOException e) {
+        } catch (IOException e) {
             e.printStackTrace();
             throw new ResponseStatusException(HttpStatus.UNSUPPORTED_MEDIA_TYPE, "invalid file content");
         }
@@ -309,6 +273,27 @@ public class CourseController {
     }
 
 
+    private static List<StudentDTO> readStudents(MultipartFile file) throws IOException {
+        Reader reader = new BufferedReader(new InputStreamReader(file.getInputStream()));
+        CsvToBean<StudentDTO> csvToBean = new CsvToBeanBuilder(reader)
+                .withType(StudentDTO.class)
+                .withIgnoreLeadingWhiteSpace(true)
+                .build();
+        return csvToBean.parse();
+    }
+
+    /**
+     * the ids whose enrollment succeeded, the results are in the same order of the ids
+     */
+    private static List<String> enrolled(List<String> studentIds, List<Boolean> results) {
+        List<String> enrolled = new ArrayList<>();
+        for (int i = 0; i < studentIds.size() && i < results.size(); i++) {
+            if (results.get(i))
+                enrolled.add(studentIds.get(i));
+        }
+        return enrolled;
+    }
+
     @Operation(summary = "create a new unconfirmed team in a course")
     @PostMapping("/{courseId}/createTeam")
     @ResponseStatus(HttpStatus.CREATED)
@@ -350,14 +335,14 @@ public class CourseController {
     @PostMapping("/{courseId}/assignment")
     void createAssignment(@RequestPart("image") MultipartFile file, @RequestPart("expiredDate") String expiredDate, @PathVariable @NotBlank String courseId){
         try {
-            Utils.checkTypeImage(file);
-            System.out.println("Original Image Byte Size - " + file.getBytes().length);
+            mediaInspectionService.checkImage(file);
+            System.out.println("Original Image Byte Size - " + file.getSize());
             SimpleDateFormat format = new SimpleDateFormat("dd/MM/yyyy");
             Timestamp expired = new Timestamp(format.parse(expiredDate).getTime());
             Timestamp published = Utils.getNow();
             AssignmentDTO a = assignmentService.addAssignmentForCourse(courseId,published,expired,file);
             assignmentService.setPapersNullForAssignment(a.getId());
-        } catch (ParseException | IOException | TikaException e) {
+        } catch (ParseException | IOException e) {
             e.printStackTrace();
             throw new ResponseStatusException(HttpStatus.UNSUPPORTED_MEDIA_TYPE, "invalid file content");
         }
@@ -0,0 +1,59 @@
+package it.polito.ai.backend.controllers;
+
+import it.polito.ai.backend.services.image.ImageNotFoundException;
+import it.polito.ai.backend.services.image.ImageResource;
+import it.polito.ai.backend.services.image.ImageService;
+import org.springframework.core.io.Resource;
+import org.springframework.http.CacheControl;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.context.request.WebRequest;
+
+import java.util.function.Supplier;
+
+class ImageResponse {
+
+    /**
+     * the image id is the hash of the content, so it is a strong etag: a matching If-None-Match
+     * is answered with 304 before the content is loaded. Range requests on the returned resource
+     * are served by the resource region converter
+     */
+    static ResponseEntity<Resource> of(String imageId, WebRequest request, ImageService imageService) {
+        if (imageId == null) {
+            throw new ImageNotFoundException("no image");
+        }
+        return of(imageId, request, () -> imageService.getResource(imageId));
+    }
+
+    /**
+     * same as of, for the images that many users download at the same time
+     */
+    static ResponseEntity<Resource> cached(String imageId, WebRequest request, ImageService imageService) {
+        if (imageId == null) {
+            throw new ImageNotFoundException("no image");
+        }
+        return of(imageId, request, () -> imageService.getCachedResource(imageId));
+    }
+
+    /**
+     * a preview is derived deterministically from its original, so its etag is derived from the original id
+     */
+    static ResponseEntity<Resource> preview(String imageId, boolean ready, WebRequest request, ImageService imageService) {
+        if (imageId == null || !ready) {
+            throw new ImageNotFoundException("no preview");
+        }
+        return of(imageId + "-preview", request, () -> imageService.getPreviewResource(imageId));
+    }
+
+    private static ResponseEntity<Resource> of(String etag, WebRequest request, Supplier<ImageResource> loader) {
+        if (request.checkNotModified(etag)) {
+            return null;
+        }
+        ImageResource resource = loader.get();
+        return ResponseEntity.ok()
+                .eTag(etag)
+                .cacheControl(CacheControl.noCache().cachePrivate())
+                .contentType(MediaType.parseMediaType(resource.getContentType()))
+                .body(resource);
+    }
+}
@@ -24,7 +24,8 @@ public class ModelHelper {
         Link coursesLink = WebMvcLinkBuilder.linkTo(WebMvcLinkBuilder.methodOn(StudentController.class).getCourses(studentDTO.getId())).withRel("enrolledTo");
         Link teamsLink = WebMvcLinkBuilder.linkTo(WebMvcLinkBuilder.methodOn(StudentController.class).getTeams(studentDTO.getId())).withRel("partOf");
         Link virtualMachinesLink = WebMvcLinkBuilder.linkTo(WebMvcLinkBuilder.methodOn(StudentController.class).getVirtualMachines(studentDTO.getId())).withRel("owns");
-        return studentDTO.add(selfLink, coursesLink, teamsLink, virtualMachinesLink);
+        Link imageLink = WebMvcLinkBuilder.linkTo(WebMvcLinkBuilder.methodOn(StudentController.class).getImage(studentDTO.getId(), null)).withRel("image");
+        return studentDTO.add(selfLink, coursesLink, teamsLink, virtualMachinesLink).addIf(studentDTO.getImageId() != null, () -> imageLink);
     }
 
 
@@ -52,14 +53,18 @@ public class ModelHelper {
     public static TeacherDTO enrich(TeacherDTO teacherDTO) {
         Link selfLink = WebMvcLinkBuilder.linkTo(WebMvcLinkBuilder.methodOn(TeacherController.class).getOne(teacherDTO.getId())).withSelfRel();
         Link coursesLink = WebMvcLinkBuilder.linkTo(WebMvcLinkBuilder.methodOn(TeacherController.class).getCourses(teacherDTO.getId())).withRel("teaches");
-        return teacherDTO.add(selfLink, coursesLink);
+        Link imageLink = WebMvcLinkBuilder.linkTo(WebMvcLinkBuilder.methodOn(TeacherController.class).getImage(teacherDTO.getId(), null)).withRel("image");
+        return teacherDTO.add(selfLink, coursesLink).addIf(teacherDTO.getImageId() != null, () -> imageLink);
     }
 
     public static AssignmentDTO enrich(AssignmentDTO assignmentDTO, String courseId){
         Link selfLink = WebMvcLinkBuilder.linkTo(WebMvcLinkBuilder.methodOn(AssignmentController.class).getOne(assignmentDTO.getId())).withSelfRel();
         Link courseLink = WebMvcLinkBuilder.linkTo(WebMvcLinkBuilder.methodOn(CourseController.class).getOne(courseId)).withRel("course");
         Link papersLink = WebMvcLinkBuilder.linkTo(WebMvcLinkBuilder.methodOn(AssignmentController.class).getLastPapers(assignmentDTO.getId())).withRel("lastPapersForEachStudent");
-        assignmentDTO.add(selfLink, papersLink).addIf(courseId != null, () -> courseLink);
+        Link imageLink = WebMvcLinkBuilder.linkTo(WebMvcLinkBuilder.methodOn(AssignmentController.class).getImage(assignmentDTO.getId(), null)).withRel("image");
+        Link previewLink = WebMvcLinkBuilder.linkTo(WebMvcLinkBuilder.methodOn(AssignmentController.class).getPreview(assignmentDTO.getId(), null)).withRel("preview");
+        assignmentDTO.add(selfLink, papersLink).addIf(courseId != null, () -> courseLink).addIf(assignmentDTO.getImageId() != null, () -> imageLink)
+                .addIf(assignmentDTO.isPreview(), () -> previewLink);
         return assignmentDTO;
     }
 
@@ -68,10 +73,27 @@ public class ModelHelper {
         Link assignmentLink = WebMvcLinkBuilder.linkTo(WebMvcLinkBuilder.methodOn(AssignmentController.class).getOne(assignmentId)).withRel("assignment");
         Link studentLink = WebMvcLinkBuilder.linkTo(WebMvcLinkBuilder.methodOn(StudentController.class).getOne(studentId)).withRel("student");
         Link history = WebMvcLinkBuilder.linkTo(WebMvcLinkBuilder.methodOn(AssignmentController.class).getHistoryPapers(assignmentId,studentId)).withRel("history");
-        paperDTO.add(selfLink).addIf(studentId != null, () -> studentLink).addIf(assignmentId != null, () -> assignmentLink).add(history);
+        Link imageLink = WebMvcLinkBuilder.linkTo(WebMvcLinkBuilder.methodOn(PaperController.class).getImage(paperDTO.getId(), null)).withRel("image");
+        Link previewLink = WebMvcLinkBuilder.linkTo(WebMvcLinkBuilder.methodOn(PaperController.class).getPreview(paperDTO.getId(), null)).withRel("preview");
+        paperDTO.add(selfLink).addIf(studentId != null, () -> studentLink).addIf(assignmentId != null, () -> assignmentLink).add(history).addIf(paperDTO.getImageId() != null, () -> imageLink)
+                .addIf(paperDTO.isPreview(), () -> previewLink);
         return paperDTO;
     }
 
+    public static AssignmentStatsDTO enrich(AssignmentStatsDTO assignmentStatsDTO, Long assignmentId) {
+        Link selfLink = WebMvcLinkBuilder.linkTo(WebMvcLinkBuilder.methodOn(AssignmentController.class).getStats(assignmentId)).withSelfRel();
+        Link assignmentLink = WebMvcLinkBuilder.linkTo(WebMvcLinkBuilder.methodOn(AssignmentController.class).getOne(assignmentId)).withRel("assignment");
+        Link papersLink = WebMvcLinkBuilder.linkTo(WebMvcLinkBuilder.methodOn(AssignmentController.class).getLastPapers(assignmentId)).withRel("lastPapersForEachStudent");
+        return assignmentStatsDTO.add(selfLink, assignmentLink, papersLink);
+    }
+
+    public static UploadSessionDTO enrich(UploadSessionDTO uploadSessionDTO, Long assignmentId, String studentId) {
+        Link selfLink = WebMvcLinkBuilder.linkTo(WebMvcLinkBuilder.methodOn(AssignmentController.class).getUpload(assignmentId, studentId, uploadSessionDTO.getId())).withSelfRel();
+        Link commitLink = WebMvcLinkBuilder.linkTo(WebMvcLinkBuilder.methodOn(AssignmentController.class).commitUpload(assignmentId, studentId, uploadSessionDTO.getId())).withRel("commit");
+        Link assignmentLink = WebMvcLinkBuilder.linkTo(WebMvcLinkBuilder.methodOn(AssignmentController.class).getOne(assignmentId)).withRel("assignment");
+        return uploadSessionDTO.add(selfLink, assignmentLink).addIf(uploadSessionDTO.getReceived() == uploadSessionDTO.getSize(), () -> commitLink);
+    }
+
     public static VirtualMachineDTO enrich(VirtualMachineDTO virtualMachineDTO, Long teamId, Long modelId) {
         Link selfLink = WebMvcLinkBuilder.linkTo(WebMvcLinkBuilder.methodOn(VirtualMachineController.class).getOne(virtualMachineDTO.getId())).withSelfRel();
         Link modelLink = WebMvcLinkBuilder.linkTo(WebMvcLinkBuilder.methodOn(VirtualMachineModelController.class).getOne(modelId)).withRel("model");
@@ -7,9 +7,11 @@ import it.polito.ai.backend.dtos.StudentDTO;
 import it.polito.ai.backend.services.assignment.PaperNotFoundException;
 import it.polito.ai.backend.services.assignment.AssignmentNotFoundException;
 import it.polito.ai.backend.services.assignment.AssignmentService;
+import it.polito.ai.backend.services.image.ImageService;
 import it.polito.ai.backend.services.team.StudentNotFoundException;
 import it.polito.ai.backend.services.team.TeamService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.io.Resource;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.validation.annotation.Validated;
@@ -17,6 +19,7 @@ import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
 
 import javax.validation.constraints.NotNull;
 
@@ -29,6 +32,8 @@ public class PaperController {
     TeamService teamService;
     @Autowired
     AssignmentService assignmentService;
+    @Autowired
+    ImageService imageService;
 
     @Operation(summary = "get paper")
     @GetMapping("/{paperId}")
@@ -38,4 +43,18 @@ public class PaperController {
         String studentId = assignmentService.getStudentForPaper(paperId).map(StudentDTO::getId).orElseThrow( () -> new StudentNotFoundException(paperId.toString()));
         return new ResponseEntity<>(ModelHelper.enrich(paperDTO,studentId,exerciseId), HttpStatus.OK);
     }
+
+    @Operation(summary = "get the image of a paper")
+    @GetMapping("/{paperId}/image")
+    ResponseEntity<Resource> getImage(@PathVariable @NotNull Long paperId, WebRequest request) {
+        PaperDTO paperDTO = assignmentService.getPaper(paperId).orElseThrow(() -> new PaperNotFoundException(paperId.toString()));
+        return ImageResponse.of(paperDTO.getImageId(), request, imageService);
+    }
+
+    @Operation(summary = "get the downscaled image of a paper")
+    @GetMapping("/{paperId}/preview")
+    ResponseEntity<Resource> getPreview(@PathVariable @NotNull Long paperId, WebRequest request) {
+        PaperDTO paperDTO = assignmentService.getPaper(paperId).orElseThrow(() -> new PaperNotFoundException(paperId.toString()));
+        return ImageResponse.preview(paperDTO.getImageId(), paperDTO.isPreview(), request, imageService);
+    }
 }
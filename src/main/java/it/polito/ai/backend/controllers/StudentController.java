@@ -3,12 +3,14 @@ package it.polito.ai.backend.controllers;
 import io.swagger.v3.oas.annotations.Operation;
 import it.polito.ai.backend.dtos.*;
 import it.polito.ai.backend.services.assignment.AssignmentService;
+import it.polito.ai.backend.services.image.ImageService;
 import it.polito.ai.backend.services.notification.NotificationService;
 import it.polito.ai.backend.services.team.*;
 import it.polito.ai.backend.services.team.StudentNotFoundException;
 import it.polito.ai.backend.services.team.TeamService;
 import it.polito.ai.backend.services.vm.VirtualMachineService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.io.Resource;
 import org.springframework.hateoas.CollectionModel;
 import org.springframework.hateoas.Link;
 import org.springframework.hateoas.server.mvc.WebMvcLinkBuilder;
@@ -16,6 +18,7 @@ import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 
 import javax.validation.constraints.NotBlank;
 import javax.validation.constraints.NotNull;
@@ -35,6 +38,8 @@ public class StudentController {
     NotificationService notificationService;
     @Autowired
     VirtualMachineService virtualMachineService;
+    @Autowired
+    ImageService imageService;
 
     @Operation(summary = "get all students")
     @GetMapping({"", "/"})
@@ -51,6 +56,13 @@ public class StudentController {
                 .orElseThrow(() -> new StudentNotFoundException(studentId))), HttpStatus.OK);
     }
 
+    @Operation(summary = "get the image of a student")
+    @GetMapping("/{studentId}/image")
+    ResponseEntity<Resource> getImage(@PathVariable @NotBlank String studentId, WebRequest request) {
+        StudentDTO studentDTO = teamService.getStudent(studentId).orElseThrow(() -> new StudentNotFoundException(studentId));
+        return ImageResponse.of(studentDTO.getImageId(), request, imageService);
+    }
+
     @Operation(summary = "get courses to which a student is enrolled")
     @GetMapping("/{studentId}/courses")
     ResponseEntity<CollectionModel<CourseDTO>> getCourses(@PathVariable @NotBlank String studentId) {
@@ -5,9 +5,11 @@ import it.polito.ai.backend.dtos.CourseDTO;
 import it.polito.ai.backend.dtos.TeacherDTO;
 import it.polito.ai.backend.dtos.VirtualMachineModelDTO;
 import it.polito.ai.backend.services.team.TeacherNotFoundException;
+import it.polito.ai.backend.services.image.ImageService;
 import it.polito.ai.backend.services.team.TeamService;
 import it.polito.ai.backend.services.vm.VirtualMachineService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.io.Resource;
 import org.springframework.hateoas.CollectionModel;
 import org.springframework.hateoas.Link;
 import org.springframework.hateoas.server.mvc.WebMvcLinkBuilder;
@@ -15,6 +17,7 @@ import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 import org.springframework.web.server.ResponseStatusException;
 
 import javax.validation.Valid;
@@ -31,6 +34,8 @@ public class TeacherController {
     TeamService teamService;
     @Autowired
     VirtualMachineService virtualMachineService;
+    @Autowired
+    ImageService imageService;
 
     @Operation(summary = "get teacher")
     @GetMapping("/{id}")
@@ -39,6 +44,13 @@ public class TeacherController {
                 orElseThrow(() -> new TeacherNotFoundException(id))), HttpStatus.OK);
     }
 
+    @Operation(summary = "get the image of a teacher")
+    @GetMapping("/{id}/image")
+    ResponseEntity<Resource> getImage(@PathVariable @NotBlank String id, WebRequest request) {
+        TeacherDTO teacherDTO = teamService.getTeacher(id).orElseThrow(() -> new TeacherNotFoundException(id));
+        return ImageResponse.of(teacherDTO.getImageId(), request, imageService);
+    }
+
     @Operation(summary = "get courses in which a teacher teaches")
     @GetMapping("/{id}/courses")
     ResponseEntity<CollectionModel<CourseDTO>> getCourses(@PathVariable @NotBlank String id) {
@@ -58,7 +58,7 @@ public class TeamController {
     }
 
 
-    @Operation(summary = "get team members status only if in db there are present tokens. The expired token are cancel automaticaly at 4am evry day")
+    @Operation(summary = "get team members status only if in db there are present tokens. The expired token are cancel automaticaly at their expiry date")
     @GetMapping("/{teamId}/members/status-list")
     ResponseEntity<List<JSONObject>> getMembersStatus(@PathVariable Long teamId) {
 
@@ -1,5 +1,6 @@
 package it.polito.ai.backend.dtos;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import io.swagger.v3.oas.annotations.media.Schema;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
@@ -20,5 +21,6 @@ public class AssignmentDTO extends RepresentationModel<AssignmentDTO> {
     Long id;
     @NotNull @Schema(description = "date(dd/mm/yyyy) when teacher uploaded the exercise") Timestamp published;
     @NotNull @Schema(description = "date(dd/mm/yyyy) when exercise expired and the students can not upload an assignment") Timestamp expired;
-    @Schema(description = "an array of byte of the image uploaded") private byte[] image;
+    @JsonIgnore String imageId;
+    @JsonIgnore boolean preview;
 }
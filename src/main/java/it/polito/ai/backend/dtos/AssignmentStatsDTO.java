@@ -0,0 +1,20 @@
+package it.polito.ai.backend.dtos;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.hateoas.RepresentationModel;
+
+import java.util.Map;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder(toBuilder = true)
+public class AssignmentStatsDTO extends RepresentationModel<AssignmentStatsDTO> {
+    @Schema(description = "number of students with a paper for the assignment") long papers;
+    @Schema(description = "number of current papers in each state") Map<PaperStatus, Long> statuses;
+    @Schema(description = "number of current papers with the flag set") long flagged;
+}
@@ -1,5 +1,6 @@
 package it.polito.ai.backend.dtos;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import io.swagger.v3.oas.annotations.media.Schema;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
@@ -24,5 +25,7 @@ public class PaperDTO extends RepresentationModel<PaperDTO> {
     PaperStatus status;
     @NotNull @Schema(description = "if true the student che upload an assignment, it is set to false when teacher assignmet an score") boolean flag;
     @Schema(description = "is a string with an opinion/score assigned by the teacher, can be null") String score;
-    @Schema(description = "an array of byte of the image uploaded") private byte[] image;
+    @JsonIgnore String imageId;
+    @JsonIgnore String studentId;
+    @JsonIgnore boolean preview;
 }
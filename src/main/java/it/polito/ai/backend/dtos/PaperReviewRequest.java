@@ -0,0 +1,14 @@
+package it.polito.ai.backend.dtos;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.Data;
+
+import javax.validation.constraints.NotBlank;
+
+@Data
+public class PaperReviewRequest {
+    @NotBlank @Schema(description = "id of student") String studentId;
+    @Schema(description = "if true the student can update an assignment") boolean flag;
+    @Schema(description = "is a string with an opinion/score assigned by the teacher, can be null") String score;
+    @Schema(description = "name of the request part holding the revised image, if missing the delivered image is kept") String image;
+}
@@ -0,0 +1,18 @@
+package it.polito.ai.backend.dtos;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class PaperReviewResult {
+    String studentId;
+    @Schema(description = "201 if the review was added, otherwise the status a single review would have failed with") int status;
+    @Schema(description = "why the review was not added, null if it was") String message;
+    @Schema(description = "id of the revised paper, null if the review was not added") Long paperId;
+}
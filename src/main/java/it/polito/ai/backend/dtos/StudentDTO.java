@@ -1,5 +1,6 @@
 package it.polito.ai.backend.dtos;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.opencsv.bean.CsvBindByName;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
@@ -29,5 +30,6 @@ public class StudentDTO extends RepresentationModel<StudentDTO> {
     String lastName;
     @Email
     private String email;
-    private byte[] image;
+    @JsonIgnore
+    private String imageId;
 }
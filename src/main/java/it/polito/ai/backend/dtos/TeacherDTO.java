@@ -1,5 +1,6 @@
 package it.polito.ai.backend.dtos;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
@@ -23,5 +24,6 @@ public class TeacherDTO extends RepresentationModel<TeacherDTO> {
     String lastName;
     @Email
     private String email;
-    private byte[] image;
+    @JsonIgnore
+    private String imageId;
 }
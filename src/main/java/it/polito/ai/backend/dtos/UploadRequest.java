@@ -0,0 +1,11 @@
+package it.polito.ai.backend.dtos;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.Data;
+
+import javax.validation.constraints.Positive;
+
+@Data
+public class UploadRequest {
+    @Positive @Schema(description = "total size of the image in bytes") long size;
+}
@@ -0,0 +1,23 @@
+package it.polito.ai.backend.dtos;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.hateoas.RepresentationModel;
+import org.springframework.hateoas.server.core.Relation;
+
+import java.sql.Timestamp;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+@Relation(collectionRelation = "uploadList", itemRelation = "upload")
+public class UploadSessionDTO extends RepresentationModel<UploadSessionDTO> {
+    String id;
+    @Schema(description = "total size of the image in bytes") long size;
+    @Schema(description = "bytes already received, the offset of the next chunk") long received;
+    Timestamp created;
+}
@@ -1,6 +1,7 @@
 package it.polito.ai.backend.entities;
 
 import lombok.Data;
+import lombok.ToString;
 
 import javax.persistence.*;
 import java.sql.Timestamp;
@@ -15,8 +16,10 @@ public class Assignment {
     Long id;
     Timestamp published;
     Timestamp expired;
-    @Lob
-    private byte[] image;
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "image_id")
+    @ToString.Exclude
+    private Image image;
     @ManyToOne
     @JoinColumn(name = "course_id")
     Course course;
@@ -0,0 +1,34 @@
+package it.polito.ai.backend.entities;
+
+import lombok.*;
+
+import javax.persistence.EmbeddedId;
+import javax.persistence.Entity;
+import javax.persistence.Index;
+import javax.persistence.Table;
+import java.sql.Timestamp;
+
+/**
+ * a moment when something expires, kept until the expiration has been handled so it survives restarts
+ */
+@Entity
+@Table(indexes = @Index(name = "deadline_due", columnList = "due"))
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@EqualsAndHashCode(onlyExplicitlyIncluded = true)
+public class Deadline {
+    @EmbeddedId
+    @EqualsAndHashCode.Include
+    DeadlineId id;
+    Timestamp due;
+    /**
+     * failed handlings so far, each one postpones the deadline a bit longer
+     */
+    int attempts;
+    /**
+     * set once the last attempt has failed, the deadline is no longer loaded until it is scheduled again
+     */
+    boolean failed;
+}
@@ -0,0 +1,20 @@
+package it.polito.ai.backend.entities;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.persistence.Embeddable;
+import javax.persistence.EnumType;
+import javax.persistence.Enumerated;
+import java.io.Serializable;
+
+@Embeddable
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class DeadlineId implements Serializable {
+    @Enumerated(EnumType.STRING)
+    DeadlineType type;
+    String target;
+}
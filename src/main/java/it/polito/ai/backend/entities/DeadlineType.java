@@ -0,0 +1,12 @@
+package it.polito.ai.backend.entities;
+
+public enum DeadlineType {
+    /**
+     * the target is the id of the assignment, its papers are delivered
+     */
+    ASSIGNMENT_EXPIRY,
+    /**
+     * the target is the id of the proposed team, its tokens are removed
+     */
+    TEAM_PROPOSAL_EXPIRY
+}
@@ -0,0 +1,49 @@
+package it.polito.ai.backend.entities;
+
+import lombok.*;
+
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.Lob;
+import java.sql.Blob;
+
+/**
+ * content addressed image, the same bytes are stored only once
+ * and shared by every paper, assignment and avatar pointing to them.
+ * Owners reference it lazily, so loading them never reads the content
+ */
+@Entity
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@EqualsAndHashCode(onlyExplicitlyIncluded = true)
+public class Image {
+    /**
+     * sha-256 of the content, hex encoded
+     */
+    @Id
+    @EqualsAndHashCode.Include
+    String id;
+    long size;
+    /**
+     * sniffed from the head of the content when it is stored
+     */
+    String contentType;
+    /**
+     * sha-256 of the upload this image was normalized from, the file name in the cold storage directory
+     */
+    String originalId;
+
+    /**
+     * number of papers, assignments, students and teachers referencing this content
+     */
+    int refCount;
+
+    /**
+     * read and written as a stream, never materialized as a whole by the store
+     */
+    @Lob
+    @ToString.Exclude
+    private Blob data;
+}
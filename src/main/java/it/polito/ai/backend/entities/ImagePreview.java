@@ -0,0 +1,32 @@
+package it.polito.ai.backend.entities;
+
+import lombok.*;
+
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.Lob;
+import java.sql.Blob;
+
+/**
+ * downscaled copy of an image, built in the background after the original is stored
+ */
+@Entity
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@EqualsAndHashCode(onlyExplicitlyIncluded = true)
+public class ImagePreview {
+    /**
+     * same id of the original image
+     */
+    @Id
+    @EqualsAndHashCode.Include
+    String id;
+    long size;
+    String contentType;
+
+    @Lob
+    @ToString.Exclude
+    private Blob data;
+}
@@ -7,14 +7,27 @@ import lombok.NoArgsConstructor;
 
 import javax.persistence.Entity;
 import javax.persistence.Id;
+import javax.persistence.Index;
+import javax.persistence.Table;
+import java.sql.Timestamp;
 
+/**
+ * a revoked token, by the sha-256 of the token, kept until the token itself expires
+ */
 @Data
 @Entity
+@Table(indexes = {@Index(name = "jwt_black_list_expiry", columnList = "expiry"),
+        @Index(name = "jwt_black_list_revoked", columnList = "revoked")})
 @Builder
 @NoArgsConstructor
 @AllArgsConstructor
 public class JwtBlackList {
     @Id
     private String id;
+    private Timestamp expiry;
+    /**
+     * when the token was revoked, the instances add the revocations made since their last refresh to their filter
+     */
+    private Timestamp revoked;
 
 }
@@ -0,0 +1,25 @@
+package it.polito.ai.backend.entities;
+
+import lombok.*;
+
+import javax.persistence.*;
+
+/**
+ * the current paper of a student for an assignment, moved forward by every new paper
+ * so the current state is read by primary key instead of sorting the whole history
+ */
+@Entity
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@EqualsAndHashCode(onlyExplicitlyIncluded = true)
+public class LatestPaper {
+    @EmbeddedId
+    @EqualsAndHashCode.Include
+    LatestPaperId id;
+
+    @OneToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "paper_id")
+    @ToString.Exclude
+    Paper paper;
+}
@@ -0,0 +1,20 @@
+package it.polito.ai.backend.entities;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.persistence.Column;
+import javax.persistence.Embeddable;
+import java.io.Serializable;
+
+@Embeddable
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class LatestPaperId implements Serializable {
+    @Column(name = "student_id")
+    String studentId;
+    @Column(name = "assignment_id")
+    Long assignmentId;
+}
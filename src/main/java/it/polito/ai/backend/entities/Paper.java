@@ -2,6 +2,9 @@ package it.polito.ai.backend.entities;
 
 import it.polito.ai.backend.dtos.PaperStatus;
 import lombok.Data;
+import lombok.ToString;
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.Parameter;
 
 import javax.persistence.*;
 import java.sql.Timestamp;
@@ -10,17 +13,27 @@ import java.sql.Timestamp;
 
 @Entity
 @Data
+@Table(indexes = @Index(name = "paper_student_assignment_published", columnList = "student, assignment_id, published"))
 public class Paper {
+    /**
+     * ids are reserved 50 at a time, so papers inserted together need a single sequence round trip
+     */
     @Id
-    @GeneratedValue
+    @GeneratedValue(generator = "paper_sequence")
+    @GenericGenerator(name = "paper_sequence", strategy = "org.hibernate.id.enhanced.SequenceStyleGenerator", parameters = {
+            @Parameter(name = "sequence_name", value = "paper_sequence"),
+            @Parameter(name = "increment_size", value = "50"),
+            @Parameter(name = "optimizer", value = "pooled-lo")})
     Long id;
     Timestamp published;
     PaperStatus status;
     boolean flag;
 
     String score;
-    @Lob
-    private byte[] image;
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "image_id")
+    @ToString.Exclude
+    private Image image;
     @ManyToOne
     @JoinColumn(name = "assignment_id")
     Assignment assignment;
@@ -48,5 +61,20 @@ public class Paper {
         }
     }
 
+    /**
+     * paper not added to the papers of its student and assignment, so that inserting
+     * many of them does not load those collections
+     */
+    public static Paper detached(Timestamp published, PaperStatus status, boolean flag, Image image, Student student, Assignment assignment) {
+        Paper paper = new Paper();
+        paper.published = published;
+        paper.status = status;
+        paper.flag = flag;
+        paper.image = image;
+        paper.student = student;
+        paper.assignment = assignment;
+        return paper;
+    }
+
 
 }
\ No newline at end of file
@@ -25,8 +25,10 @@ public class Student {
     String lastName;
     @Email
     private String email;
-    @Lob
-    private byte[] image;
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "image_id")
+    @ToString.Exclude
+    private Image image;
 
     @ManyToMany(cascade = {CascadeType.PERSIST, CascadeType.MERGE})
     @JoinTable(name = "student_course",
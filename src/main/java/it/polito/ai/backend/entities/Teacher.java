@@ -25,9 +25,10 @@ public class Teacher {
     private String lastName;
     @Email
     private String email;
-    //Storing the image (bytes) in the database
-    @Lob
-    private byte[] image;
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "image_id")
+    @ToString.Exclude
+    private Image image;
 
     @ManyToMany(cascade = {CascadeType.PERSIST, CascadeType.MERGE})
     @JoinTable(name = "teacher_course",
@@ -0,0 +1,33 @@
+package it.polito.ai.backend.entities;
+
+import lombok.*;
+
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import java.sql.Timestamp;
+
+/**
+ * paper upload sent in chunks, the bytes received so far are kept on disk
+ */
+@Entity
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@EqualsAndHashCode(onlyExplicitlyIncluded = true)
+public class UploadSession {
+    @Id
+    @EqualsAndHashCode.Include
+    String id;
+    String studentId;
+    Long assignmentId;
+    /**
+     * declared by the client when the session is opened
+     */
+    long size;
+    /**
+     * bytes already written, the next chunk must start here
+     */
+    long received;
+    Timestamp created;
+}
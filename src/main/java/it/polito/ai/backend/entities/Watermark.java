@@ -0,0 +1,27 @@
+package it.polito.ai.backend.entities;
+
+import lombok.*;
+
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import java.sql.Timestamp;
+
+/**
+ * position reached by a job that walks rows in (timestamp, id) order, so the next run starts from there
+ */
+@Entity
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@EqualsAndHashCode(onlyExplicitlyIncluded = true)
+public class Watermark {
+    @Id
+    @EqualsAndHashCode.Include
+    String name;
+    Timestamp timestamp;
+    /**
+     * breaks the ties between rows with the same timestamp
+     */
+    Long lastId;
+}
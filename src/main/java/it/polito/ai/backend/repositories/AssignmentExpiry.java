@@ -0,0 +1,11 @@
+package it.polito.ai.backend.repositories;
+
+import java.sql.Timestamp;
+
+/**
+ * assignment columns read by the expired assignments sweep
+ */
+public interface AssignmentExpiry {
+    Long getId();
+    Timestamp getExpired();
+}
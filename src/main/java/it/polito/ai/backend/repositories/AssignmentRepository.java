@@ -2,12 +2,30 @@ package it.polito.ai.backend.repositories;
 
 import it.polito.ai.backend.entities.Assignment;
 
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
 
 import java.sql.Timestamp;
 import java.util.List;
+import java.util.Optional;
 
 public interface AssignmentRepository extends JpaRepository<Assignment,Long> {
     List<Assignment> findByExpiredBefore(Timestamp t);
+    List<Assignment> findByCourseIdAndExpiredAfter(String courseId, Timestamp t);
+    List<AssignmentExpiry> findAllByExpiredAfter(Timestamp t);
+
+    /**
+     * the assignments expired up to now that come after (from, lastId), oldest first
+     */
+    @Query("select a.id as id, a.expired as expired from Assignment a where a.expired<=:now " +
+            "and (a.expired>:from or (a.expired=:from and a.id>:lastId)) order by a.expired, a.id")
+    List<AssignmentExpiry> findExpiredAfter(Timestamp from, Long lastId, Timestamp now, Pageable pageable);
+
+    @Query("select c.id from Assignment a inner join a.course c where a.id=:assignmentId")
+    Optional<String> findCourseIdById(Long assignmentId);
+
+    @Query("select a.id as id, c.id as member from Assignment a inner join a.course c")
+    List<Membership<Long>> findAllCourseIds();
 
 }
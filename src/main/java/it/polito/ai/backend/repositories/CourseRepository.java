@@ -8,6 +8,7 @@ import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 
 import java.util.List;
+import java.util.Optional;
 
 @Repository
 public interface CourseRepository extends JpaRepository<Course, String> {
@@ -40,4 +41,22 @@ public interface CourseRepository extends JpaRepository<Course, String> {
 
     @Query("select count(v) from Course c inner join c.teams t inner join t.virtualMachines v where c.id=:courseId and v.status=:status")
     int countVirtualMachinesByCourseAndStatus(String courseId, VirtualMachineStatus status);
+
+    @Query("select s.id from Course c inner join c.students s where c.id=:courseId")
+    List<String> findStudentIdsById(String courseId);
+
+    @Query("select t.id from Course c inner join c.teachers t where c.id=:courseId")
+    List<String> findTeacherIdsById(String courseId);
+
+    @Query("select c.id as id, s.id as member from Course c inner join c.students s")
+    List<Membership<String>> findAllStudentIds();
+
+    @Query("select c.id as id, t.id as member from Course c inner join c.teachers t")
+    List<Membership<String>> findAllTeacherIds();
+
+    @Query("select c.id from Course c")
+    List<String> findAllIds();
+
+    @Query("select c.id from Course c where c.virtualMachineModel.id=:modelId")
+    Optional<String> findIdByVirtualMachineModelId(Long modelId);
 }
@@ -0,0 +1,39 @@
+package it.polito.ai.backend.repositories;
+
+import it.polito.ai.backend.entities.Deadline;
+import it.polito.ai.backend.entities.DeadlineId;
+import it.polito.ai.backend.entities.DeadlineType;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+
+import java.sql.Timestamp;
+import java.util.List;
+
+public interface DeadlineRepository extends JpaRepository<Deadline, DeadlineId> {
+    List<Deadline> findAllByFailedFalseAndDueBeforeOrderByDue(Timestamp t, Pageable pageable);
+
+    List<Deadline> findAllByFailedTrue();
+
+    /**
+     * removes the deadline only if it has not been moved in the meantime
+     */
+    @Modifying
+    @Query("delete from Deadline d where d.id.type=:type and d.id.target=:target and d.due=:due")
+    int deleteIfDue(DeadlineType type, String target, Timestamp due);
+
+    /**
+     * moves a failed deadline forward, only if it has not been moved in the meantime
+     */
+    @Modifying
+    @Query("update Deadline d set d.due=:next, d.attempts=:attempts where d.id.type=:type and d.id.target=:target and d.due=:due")
+    int postponeIfDue(DeadlineType type, String target, Timestamp due, Timestamp next, int attempts);
+
+    /**
+     * keeps a deadline whose last attempt has failed, only if it has not been moved in the meantime
+     */
+    @Modifying
+    @Query("update Deadline d set d.failed=true, d.attempts=:attempts where d.id.type=:type and d.id.target=:target and d.due=:due")
+    int failIfDue(DeadlineType type, String target, Timestamp due, int attempts);
+}
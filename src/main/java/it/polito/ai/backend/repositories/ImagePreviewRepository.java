@@ -0,0 +1,22 @@
+package it.polito.ai.backend.repositories;
+
+import it.polito.ai.backend.entities.ImagePreview;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+
+import java.util.Collection;
+import java.util.List;
+
+public interface ImagePreviewRepository extends JpaRepository<ImagePreview, String> {
+    @Query("select p.id from ImagePreview p where p.id in :imageIds")
+    List<String> findExistingIds(Collection<String> imageIds);
+
+    @Modifying
+    @Query("delete from ImagePreview p where p.id=:imageId")
+    int deleteIfPresent(String imageId);
+
+    @Modifying
+    @Query("delete from ImagePreview p where not exists (select i from Image i where i.id=p.id)")
+    int deleteOrphans();
+}
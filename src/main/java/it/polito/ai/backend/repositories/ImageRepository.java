@@ -0,0 +1,48 @@
+package it.polito.ai.backend.repositories;
+
+import it.polito.ai.backend.entities.Image;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+
+import java.util.Optional;
+
+public interface ImageRepository extends JpaRepository<Image, String> {
+    @Query("select i.size from Image i where i.id=:imageId")
+    Optional<Long> findSize(String imageId);
+
+    @Modifying
+    @Query("update Image i set i.refCount=i.refCount+1 where i.id=:imageId")
+    int retain(String imageId);
+
+    @Modifying
+    @Query("update Image i set i.refCount=i.refCount+:count where i.id=:imageId")
+    int retain(String imageId, int count);
+
+    @Modifying
+    @Query("update Image i set i.originalId=:originalId where i.id=:imageId and i.originalId is null")
+    int setOriginalIfMissing(String imageId, String originalId);
+
+    @Modifying
+    @Query("update Image i set i.refCount=i.refCount-1 where i.id=:imageId and i.refCount>0")
+    int release(String imageId);
+
+    @Modifying
+    @Query("update Image i set i.refCount=i.refCount-:count where i.id=:imageId and i.refCount>=:count")
+    int release(String imageId, int count);
+
+    @Modifying
+    @Query("delete from Image i where i.id=:imageId and i.refCount<=0 " +
+            "and not exists (select p from Paper p where p.image=i) " +
+            "and not exists (select a from Assignment a where a.image=i) " +
+            "and not exists (select s from Student s where s.image=i) " +
+            "and not exists (select t from Teacher t where t.image=i)")
+    int deleteIfUnreferenced(String imageId);
+
+    @Modifying
+    @Query("delete from Image i where not exists (select p from Paper p where p.image=i) " +
+            "and not exists (select a from Assignment a where a.image=i) " +
+            "and not exists (select s from Student s where s.image=i) " +
+            "and not exists (select t from Teacher t where t.image=i)")
+    int deleteUnreferenced();
+}
@@ -2,6 +2,25 @@ package it.polito.ai.backend.repositories;
 
 import it.polito.ai.backend.entities.JwtBlackList;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+
+import java.sql.Timestamp;
+import java.util.List;
 
 public interface JwtBlackListRepository extends JpaRepository<JwtBlackList,String> {
+    @Query("select b.id from JwtBlackList b where b.expiry>:now")
+    List<String> findIdsByExpiryAfter(Timestamp now);
+
+    @Query("select b.id from JwtBlackList b where b.revoked>=:since and b.expiry>:now")
+    List<String> findIdsByRevokedSince(Timestamp since, Timestamp now);
+
+    /**
+     * the tokens revoked before they were stored by their hash, the id is the whole token
+     */
+    List<JwtBlackList> findAllByExpiryIsNull();
+
+    @Modifying
+    @Query("delete from JwtBlackList b where b.expiry<=:now")
+    int deleteExpired(Timestamp now);
 }
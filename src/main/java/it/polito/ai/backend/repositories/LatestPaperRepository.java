@@ -0,0 +1,66 @@
+package it.polito.ai.backend.repositories;
+
+import it.polito.ai.backend.entities.LatestPaper;
+import it.polito.ai.backend.entities.LatestPaperId;
+import it.polito.ai.backend.entities.Paper;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+
+import javax.persistence.LockModeType;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+public interface LatestPaperRepository extends JpaRepository<LatestPaper, LatestPaperId> {
+    /**
+     * locks the pointer, concurrent papers of the same student for the same assignment are serialized
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select l from LatestPaper l where l.id=:id")
+    Optional<LatestPaper> findForUpdate(LatestPaperId id);
+
+    /**
+     * makes the given, just saved, paper the current one of its student for its assignment
+     */
+    default void moveTo(Paper paper) {
+        LatestPaperId id = new LatestPaperId(paper.getStudent().getId(), paper.getAssignment().getId());
+        LatestPaper latest = findForUpdate(id).orElseGet(() -> new LatestPaper(id, null));
+        latest.setPaper(paper);
+        save(latest);
+    }
+
+    @Query("select p from LatestPaper l join l.paper p where l.id.studentId=:studentId and l.id.assignmentId=:assignmentId")
+    Optional<Paper> findPaper(String studentId, Long assignmentId);
+
+    /**
+     * the newest paper of every student, joining the pointers instead of grouping the whole history
+     */
+    @Query("select p.id as id, p.published as published, p.status as status, p.flag as flag, p.score as score, p.image.id as imageId, p.student.id as studentId " +
+            "from LatestPaper l join l.paper p where l.id.assignmentId=:assignmentId order by l.id.studentId")
+    List<PaperSummary> findSummariesByAssignment(Long assignmentId);
+
+    @Query("select p.status as status, count(p) as papers, sum(case when p.flag=true then 1 else 0 end) as flagged " +
+            "from LatestPaper l join l.paper p where l.id.assignmentId=:assignmentId group by p.status")
+    List<PaperStatusCount> countByStatus(Long assignmentId);
+
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select l from LatestPaper l join fetch l.paper p join fetch p.student join fetch p.assignment where l.id.assignmentId in :assignmentIds")
+    List<LatestPaper> findForUpdateByAssignmentIn(Collection<Long> assignmentIds);
+
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select l from LatestPaper l join fetch l.paper p join fetch p.student where l.id.assignmentId=:assignmentId and l.id.studentId in :studentIds")
+    List<LatestPaper> findForUpdateByAssignmentAndStudentIn(Long assignmentId, Collection<String> studentIds);
+
+    @Query("select l.id from LatestPaper l where l.id.studentId in :studentIds and l.id.assignmentId in :assignmentIds")
+    List<LatestPaperId> findIds(Collection<String> studentIds, Collection<Long> assignmentIds);
+
+    @Modifying
+    @Query("delete from LatestPaper l where l.id.assignmentId in :assignmentIds")
+    int deleteByAssignmentIn(Collection<Long> assignmentIds);
+
+    @Modifying
+    @Query("delete from LatestPaper l where l.id.studentId=:studentId")
+    int deleteByStudent(String studentId);
+}
@@ -0,0 +1,9 @@
+package it.polito.ai.backend.repositories;
+
+/**
+ * an (id, member id) pair read by the queries that warm the membership index
+ */
+public interface Membership<K> {
+    K getId();
+    String getMember();
+}
@@ -3,11 +3,44 @@ package it.polito.ai.backend.repositories;
 import it.polito.ai.backend.entities.Paper;
 import it.polito.ai.backend.entities.Assignment;
 import it.polito.ai.backend.entities.Student;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
 
+import java.sql.Timestamp;
+import java.util.Collection;
 import java.util.List;
 
 public interface PaperRepository extends JpaRepository<Paper,Long> {
     List<Paper> findByStudentAndAssignment(Student student, Assignment assignment);
 
+    @Query("select p.id as id, p.published as published, p.status as status, p.flag as flag, p.score as score, p.image.id as imageId, p.student.id as studentId " +
+            "from Paper p where p.student.id=:studentId and p.assignment.id=:assignmentId order by p.published, p.id")
+    List<PaperSummary> findHistory(String studentId, Long assignmentId);
+
+    /**
+     * the papers after lastId published before the cutoff that only flipped the status: no score, not the
+     * latest of their student and assignment, and showing an image already shown by an earlier paper
+     */
+    @Query("select p.id as id, p.published as published, p.status as status, p.flag as flag, p.score as score, p.image.id as imageId, p.student.id as studentId " +
+            "from Paper p where p.id>:lastId and p.published<:cutoff and p.score is null " +
+            "and not exists (select l from LatestPaper l where l.paper=p) " +
+            "and exists (select q from Paper q where q.student=p.student and q.assignment=p.assignment and q.image=p.image and q.id<p.id) " +
+            "order by p.id")
+    List<PaperSummary> findCompactable(Long lastId, Timestamp cutoff, Pageable pageable);
+
+    /**
+     * the first paper between lastId and before that would be compactable if it was not the latest one,
+     * it becomes compactable once its student submits a newer paper
+     */
+    @Query("select min(p.id) from Paper p where p.id>:lastId and p.id<:before and p.published<:cutoff and p.score is null " +
+            "and exists (select l from LatestPaper l where l.paper=p) " +
+            "and exists (select q from Paper q where q.student=p.student and q.assignment=p.assignment and q.image=p.image and q.id<p.id)")
+    Long findFirstLatestCompactable(Long lastId, Long before, Timestamp cutoff);
+
+    @Modifying
+    @Query("delete from Paper p where p.id in :ids")
+    int deleteByIdIn(Collection<Long> ids);
+
 }
@@ -0,0 +1,12 @@
+package it.polito.ai.backend.repositories;
+
+import it.polito.ai.backend.dtos.PaperStatus;
+
+/**
+ * how many current papers of an assignment are in a status, read by an aggregate query
+ */
+public interface PaperStatusCount {
+    PaperStatus getStatus();
+    Long getPapers();
+    Long getFlagged();
+}
@@ -0,0 +1,18 @@
+package it.polito.ai.backend.repositories;
+
+import it.polito.ai.backend.dtos.PaperStatus;
+
+import java.sql.Timestamp;
+
+/**
+ * paper columns without the image, read by projection queries
+ */
+public interface PaperSummary {
+    Long getId();
+    Timestamp getPublished();
+    PaperStatus getStatus();
+    boolean isFlag();
+    String getScore();
+    String getImageId();
+    String getStudentId();
+}
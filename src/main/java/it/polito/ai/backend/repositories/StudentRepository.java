@@ -2,8 +2,10 @@ package it.polito.ai.backend.repositories;
 
 import it.polito.ai.backend.entities.Student;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 
+import java.util.List;
 import java.util.Optional;
 
 
@@ -11,4 +13,8 @@ import java.util.Optional;
 public interface StudentRepository extends JpaRepository<Student, String> {
     Optional<Student> findByEmail(String email);
 
+    @Query("select s.id from Course c join c.students s where c.id=:courseId " +
+            "and not exists (select l from LatestPaper l where l.id.studentId=s.id and l.id.assignmentId=:assignmentId)")
+    List<String> findIdsWithoutPaper(String courseId, Long assignmentId);
+
 }
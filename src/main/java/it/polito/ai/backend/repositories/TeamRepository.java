@@ -8,6 +8,7 @@ import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 
 import java.util.List;
+import java.util.Optional;
 
 @Repository
 public interface TeamRepository extends JpaRepository<Team, Long> {
@@ -28,4 +29,19 @@ public interface TeamRepository extends JpaRepository<Team, Long> {
 
     @Query("select count(v) from Team t inner join t.virtualMachines v where t.id=:teamId")
     int countVirtualMachinesByTeam(Long teamId);
+
+    @Query("select c.id from Team t inner join t.course c where t.id=:teamId")
+    Optional<String> findCourseIdById(Long teamId);
+
+    @Query("select s.id from Team t inner join t.members s where t.id=:teamId")
+    List<String> findMemberIdsById(Long teamId);
+
+    @Query("select t.id as id, c.id as member from Team t inner join t.course c")
+    List<Membership<Long>> findAllCourseIds();
+
+    @Query("select t.id as id, s.id as member from Team t inner join t.members s")
+    List<Membership<Long>> findAllMemberIds();
+
+    @Query("select t.id from Team t where t.configuration.id=:configurationId")
+    Optional<Long> findIdByConfigurationId(Long configurationId);
 }
@@ -11,6 +11,7 @@ import java.util.Optional;
 @Repository
 public interface TokenRepository extends JpaRepository<Token, String> {
     List<Token> findAllByExpiryDateBefore(Timestamp t);
+    List<Token> findAllByExpiryDateAfter(Timestamp t);
 
     List<Token> findAllByTeamId(Long teamId);
 
@@ -0,0 +1,11 @@
+package it.polito.ai.backend.repositories;
+
+import it.polito.ai.backend.entities.UploadSession;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+import java.sql.Timestamp;
+import java.util.List;
+
+public interface UploadSessionRepository extends JpaRepository<UploadSession, String> {
+    List<UploadSession> findAllByCreatedBefore(Timestamp timestamp);
+}
@@ -3,9 +3,13 @@ package it.polito.ai.backend.repositories;
 
 import it.polito.ai.backend.entities.User;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
 
 import java.util.Optional;
 
 public interface UserRepository extends JpaRepository<User, String> {
     Optional<User> findByEmail(String email);
+
+    @Query("select u.enabled from User u where u.id=:userId")
+    Optional<Boolean> findEnabledById(String userId);
 }
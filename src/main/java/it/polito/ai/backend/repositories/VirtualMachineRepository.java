@@ -2,6 +2,15 @@ package it.polito.ai.backend.repositories;
 
 import it.polito.ai.backend.entities.VirtualMachine;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+
+import java.util.List;
+import java.util.Optional;
 
 public interface VirtualMachineRepository extends JpaRepository<VirtualMachine, Long> {
+    @Query("select t.id from VirtualMachine v inner join v.team t where v.id=:vmId")
+    Optional<Long> findTeamIdById(Long vmId);
+
+    @Query("select o.id from VirtualMachine v inner join v.owners o where v.id=:vmId")
+    List<String> findOwnerIdsById(Long vmId);
 }
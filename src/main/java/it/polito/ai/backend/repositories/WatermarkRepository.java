@@ -0,0 +1,7 @@
+package it.polito.ai.backend.repositories;
+
+import it.polito.ai.backend.entities.Watermark;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+public interface WatermarkRepository extends JpaRepository<Watermark, String> {
+}
@@ -0,0 +1,59 @@
+package it.polito.ai.backend.security;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * a set that can answer "maybe present" wrongly with the given probability, but never "absent" for an
+ * added key. Keys are digests already, their first 16 bytes are the two hashes the bits are derived from
+ */
+final class BloomFilter {
+
+    private final AtomicLongArray bits;
+    /**
+     * number of bits, a multiple of 64
+     */
+    final long size;
+    final int hashes;
+
+    BloomFilter(long expected, double falsePositives) {
+        long n = Math.max(expected, 1);
+        long m = (long) Math.ceil(-n * Math.log(falsePositives) / (Math.log(2) * Math.log(2)));
+        size = Math.max(64, (m + 63) / 64 * 64);
+        hashes = Math.max(1, (int) Math.round((double) size / n * Math.log(2)));
+        bits = new AtomicLongArray((int) (size / 64));
+    }
+
+    void add(byte[] digest) {
+        long h1 = hash(digest, 0);
+        long h2 = hash(digest, 8);
+        for (int i = 0; i < hashes; i++) {
+            long bit = Math.floorMod(h1 + i * h2, size);
+            int word = (int) (bit >>> 6);
+            long mask = 1L << bit;
+            long current;
+            while (((current = bits.get(word)) & mask) == 0 && !bits.compareAndSet(word, current, current | mask)) {
+                // another bit of the word was set meanwhile
+            }
+        }
+    }
+
+    boolean mightContain(byte[] digest) {
+        long h1 = hash(digest, 0);
+        long h2 = hash(digest, 8);
+        for (int i = 0; i < hashes; i++) {
+            long bit = Math.floorMod(h1 + i * h2, size);
+            if ((bits.get((int) (bit >>> 6)) & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static long hash(byte[] digest, int offset) {
+        long hash = 0;
+        for (int i = offset; i < offset + 8; i++) {
+            hash = (hash << 8) | (digest[i] & 0xff);
+        }
+        return hash;
+    }
+}
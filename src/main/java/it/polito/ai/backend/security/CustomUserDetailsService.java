@@ -6,15 +6,19 @@ import it.polito.ai.backend.entities.ConfirmationToken;
 import it.polito.ai.backend.entities.Student;
 import it.polito.ai.backend.entities.Teacher;
 import it.polito.ai.backend.entities.User;
+import it.polito.ai.backend.repositories.LatestPaperRepository;
 import it.polito.ai.backend.repositories.StudentRepository;
 import it.polito.ai.backend.repositories.TeacherRepository;
 import it.polito.ai.backend.repositories.UserRepository;
 import it.polito.ai.backend.repositories.ConfirmationTokenRepository;
 import it.polito.ai.backend.services.Utils;
+import it.polito.ai.backend.services.assignment.AssignmentStatsCache;
+import it.polito.ai.backend.services.image.ImageService;
 import it.polito.ai.backend.services.team.TeamServiceImpl;
 import lombok.AllArgsConstructor;
 import org.modelmapper.ModelMapper;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.io.InputStreamSource;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.mail.SimpleMailMessage;
@@ -27,6 +31,7 @@ import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.stereotype.Service;
 
+import java.io.IOException;
 import java.sql.Timestamp;
 import java.util.Arrays;
 import java.util.List;
@@ -49,6 +54,14 @@ public class CustomUserDetailsService implements UserDetailsService {
     TeacherRepository teacherRepository;
     @Autowired
     StudentRepository studentRepository;
+    @Autowired
+    LatestPaperRepository latestPaperRepository;
+    @Autowired
+    ImageService imageService;
+    @Autowired
+    AssignmentStatsCache assignmentStatsCache;
+    @Autowired
+    UserStatusCache userStatusCache;
 
     private final BCryptPasswordEncoder bCryptPasswordEncoder;
 
@@ -90,7 +103,7 @@ public class CustomUserDetailsService implements UserDetailsService {
         return false;
     }
 
-    public void signUpUser(UserInformationRequest data, byte[] image)  {
+    public void signUpUser(UserInformationRequest data, InputStreamSource image) throws IOException {
         /*check if there is an other user with the same email and if email is of polito.it*/
         if(userRepository.findByEmail(data.getEmail()).isPresent()
                 || (!data.getEmail().contains("@polito.it") && !data.getEmail().contains("@studenti.polito.it")))
@@ -109,8 +122,8 @@ public class CustomUserDetailsService implements UserDetailsService {
         if(data.getEmail().contains("@polito.it")) {
             user.setRoles(Arrays.asList("ROLE_TEACHER"));
             TeacherDTO teacherDTO = new TeacherDTO(data.getId(),data.getLastName(),
-                        data.getFirstName(),data.getEmail(),image);
-            teamService.addTeacher(teacherDTO);
+                        data.getFirstName(),data.getEmail(),null);
+            teamService.addTeacher(teacherDTO, image);
 
 
         }
@@ -118,10 +131,11 @@ public class CustomUserDetailsService implements UserDetailsService {
         else if(data.getEmail().contains("@studenti.polito.it")) {
             user.setRoles(Arrays.asList("ROLE_STUDENT"));
             StudentDTO studentDTO = new StudentDTO(data.getId(),data.getLastName(),
-                    data.getFirstName(),data.getEmail(),image);
-            teamService.addStudent(studentDTO);
+                    data.getFirstName(),data.getEmail(),null);
+            teamService.addStudent(studentDTO, image);
         }
         userRepository.save(user);
+        userStatusCache.evict(user.getId());
         /*create token to confirmation the account*/
         ConfirmationTokenDTO confirmationTokenDTO = new ConfirmationTokenDTO();
         confirmationTokenDTO.setUsername(user.getId());
@@ -148,6 +162,7 @@ public class CustomUserDetailsService implements UserDetailsService {
             throw new UsernameNotFoundException("User already confirmed");
         user.get().setEnabled(true);
         userRepository.save(user.get());
+        userStatusCache.evict(user.get().getId());
         confirmationTokenRepository.delete(tokenOptional.get());
         return "User correct confirmed. Now you can login on our application!";
     }
@@ -172,12 +187,18 @@ public class CustomUserDetailsService implements UserDetailsService {
         String email = user.get().getEmail();
         if(email.contains("@polito.it")){
             Teacher t = teacherRepository.findByEmail(email).orElse(null);
-            if(t!=null)
+            if(t!=null) {
                 teacherRepository.delete(t);
+                imageService.release(t.getImage());
+            }
         }else{
             Student s = studentRepository.findByEmail(email).orElse(null);
-            if(s!=null)
+            if(s!=null) {
+                latestPaperRepository.deleteByStudent(s.getId());
+                assignmentStatsCache.evictAll();
                 studentRepository.delete(s);
+                imageService.release(s.getImage());
+            }
 
         }
 
@@ -188,6 +209,7 @@ public class CustomUserDetailsService implements UserDetailsService {
 
         }
         userRepository.delete(user.get());
+        userStatusCache.evict(userId);
 
     }
 }
@@ -0,0 +1,50 @@
+package it.polito.ai.backend.security;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BooleanSupplier;
+
+/**
+ * authorisation facts computed at most once per http request, keyed by predicate, principal and argument.
+ * They are kept in the request attributes, so they are dropped with the request; outside a request
+ * (scheduled tasks, async threads) every decision is computed. Hits and misses are counted by
+ * the security.decisions metric
+ */
+@Component
+public class DecisionCache {
+
+    private static final String ATTRIBUTE = DecisionCache.class.getName();
+
+    @Autowired
+    MeterRegistry meterRegistry;
+
+    public boolean decide(String predicate, String userId, Object argument, BooleanSupplier decision) {
+        RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+        if (attributes == null) {
+            return decision.getAsBoolean();
+        }
+        @SuppressWarnings("unchecked")
+        Map<List<Object>, Boolean> decisions = (Map<List<Object>, Boolean>) attributes.getAttribute(ATTRIBUTE, RequestAttributes.SCOPE_REQUEST);
+        if (decisions == null) {
+            decisions = new HashMap<>();
+            attributes.setAttribute(ATTRIBUTE, decisions, RequestAttributes.SCOPE_REQUEST);
+        }
+        List<Object> key = Arrays.asList(predicate, userId, argument);
+        Boolean cached = decisions.get(key);
+        meterRegistry.counter("security.decisions", "predicate", predicate, "result", cached != null ? "hit" : "miss").increment();
+        if (cached != null) {
+            return cached;
+        }
+        boolean result = decision.getAsBoolean();
+        decisions.put(key, result);
+        return result;
+    }
+}
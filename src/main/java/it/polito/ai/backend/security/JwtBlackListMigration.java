@@ -0,0 +1,44 @@
+package it.polito.ai.backend.security;
+
+import it.polito.ai.backend.entities.JwtBlackList;
+import it.polito.ai.backend.repositories.JwtBlackListRepository;
+import it.polito.ai.backend.services.Utils;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.CommandLineRunner;
+import org.springframework.stereotype.Component;
+
+import java.sql.Timestamp;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * stores the tokens revoked by their whole value again by their hash and expiry, the expired ones are dropped
+ */
+@Component
+public class JwtBlackListMigration implements CommandLineRunner {
+
+    @Autowired
+    JwtBlackListRepository jwtBlackListRepository;
+    @Autowired
+    JwtTokenProvider jwtTokenProvider;
+    @Autowired
+    TokenRevocationStore tokenRevocationStore;
+
+    @Override
+    public void run(String... args) {
+        List<JwtBlackList> revoked = jwtBlackListRepository.findAllByExpiryIsNull();
+        if (revoked.isEmpty()) {
+            return;
+        }
+        int kept = 0;
+        for (JwtBlackList token : revoked) {
+            jwtBlackListRepository.delete(token);
+            Date expiration = jwtTokenProvider.getExpiration(token.getId());
+            if (expiration != null && expiration.after(Utils.getNow())) {
+                tokenRevocationStore.revoke(token.getId(), new Timestamp(expiration.getTime()));
+                kept++;
+            }
+        }
+        System.out.println("Migrated " + kept + " of " + revoked.size() + " revoked tokens");
+    }
+}
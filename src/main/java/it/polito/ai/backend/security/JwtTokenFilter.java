@@ -1,4 +1,5 @@
 package it.polito.ai.backend.security;
+import io.jsonwebtoken.Claims;
 import io.jsonwebtoken.ExpiredJwtException;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.security.core.Authentication;
@@ -31,9 +32,12 @@ public class JwtTokenFilter extends OncePerRequestFilter {
             // get only the Token
             String jwtToken = jwtTokenProvider.resolveToken(request);
 
-            if (StringUtils.hasText(jwtToken) && jwtTokenProvider.validateToken(jwtToken)) {
-                Authentication authentication = jwtTokenProvider.getAuthentication(jwtToken);
+            Claims claims = StringUtils.hasText(jwtToken) ? jwtTokenProvider.getValidClaims(jwtToken) : null;
+            if (claims != null) {
+                Authentication authentication = jwtTokenProvider.getAuthentication(claims);
                 SecurityContextHolder.getContext().setAuthentication(authentication);
+                // verified once, read again by the refresh of the token
+                request.setAttribute("claims", claims);
             }
             chain.doFilter(request, response);
 
@@ -54,9 +58,8 @@ public class JwtTokenFilter extends OncePerRequestFilter {
     }
 
     private void allowForRefreshToken(ExpiredJwtException ex, HttpServletRequest request) {
-        String jwtToken = jwtTokenProvider.resolveToken(request);
-
-        Authentication authentication = jwtTokenProvider.getAuthentication(jwtToken);
+        // the token is expired, its claims have been verified already
+        Authentication authentication = jwtTokenProvider.getAuthentication(ex.getClaims());
         SecurityContextHolder.getContext().setAuthentication(authentication);
 
         request.setAttribute("claims", ex.getClaims());
@@ -1,25 +1,31 @@
 package it.polito.ai.backend.security;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
 import io.jsonwebtoken.*;
-import it.polito.ai.backend.entities.JwtBlackList;
-import it.polito.ai.backend.repositories.JwtBlackListRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
 import it.polito.ai.backend.services.Utils;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.GrantedAuthority;
 import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.userdetails.User;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.core.userdetails.UserDetailsService;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.stereotype.Component;
 
 import javax.annotation.PostConstruct;
 import javax.servlet.http.HttpServletRequest;
 import java.sql.Timestamp;
 import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
 
 @Component
 public class JwtTokenProvider {
@@ -31,6 +37,9 @@ public class JwtTokenProvider {
     @Value("${security.jwt.token.expire-length:3600000}")
     private long validityInMilliseconds = 3600000; // 1h
 
+    @Value("${security.jwt.stateless:true}")
+    private boolean stateless = true;
+
     @Value("3600000")
     public void setRefreshExpirationDateInMs(int refreshExpirationDateInMs) {
         this.refreshExpirationDateInMs = refreshExpirationDateInMs;
@@ -41,11 +50,46 @@ public class JwtTokenProvider {
     private UserDetailsService userDetailsService;
 
     @Autowired
-    private JwtBlackListRepository jwtBlackListRepository;
+    private TokenRevocationStore tokenRevocationStore;
+
+    @Autowired
+    private UserStatusCache userStatusCache;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${security.jwt.claims-cache.max-size:10000}")
+    private long claimsCacheSize = 10000;
+
+    /**
+     * the claims of the tokens verified already, by the sha-256 of the token until it expires
+     */
+    private Cache<String, Claims> verifiedClaims;
 
     @PostConstruct
     protected void init(){
         secretKey = Base64.getEncoder().encodeToString(secretKey.getBytes());
+        verifiedClaims = Caffeine.newBuilder()
+                .maximumSize(claimsCacheSize)
+                .expireAfter(new Expiry<String, Claims>() {
+                    @Override
+                    public long expireAfterCreate(String key, Claims claims, long currentTime) {
+                        return TimeUnit.MILLISECONDS.toNanos(Math.max(0, claims.getExpiration().getTime() - System.currentTimeMillis()));
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(String key, Claims claims, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+
+                    @Override
+                    public long expireAfterRead(String key, Claims claims, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, verifiedClaims, "jwt-claims");
     }
 
 
@@ -67,12 +111,27 @@ public class JwtTokenProvider {
     }
 
     public Authentication getAuthentication(String token){
-        UserDetails userDetails = this.userDetailsService.loadUserByUsername(getUsername(token));
-        return new UsernamePasswordAuthenticationToken(userDetails,"",userDetails.getAuthorities());
+        return getAuthentication(getClaims(TokenRevocationStore.digest(token), token));
     }
 
-    private String getUsername(String token) {
-        return Jwts.parser().setSigningKey(secretKey).parseClaimsJws(token).getBody().getSubject();
+    /**
+     * in stateless mode the principal and its authorities are built from the verified claims and only
+     * the status of the account is read; tokens without roles load the whole user
+     */
+    public Authentication getAuthentication(Claims claims){
+        String userId = claims.getSubject();
+        Object roles = claims.get("roles");
+        if (stateless && roles instanceof List) {
+            if (!userStatusCache.isEnabled(userId))
+                throw new UsernameNotFoundException("Username: "+userId+" not found");
+            List<GrantedAuthority> authorities = ((List<?>) roles).stream()
+                    .map(role -> new SimpleGrantedAuthority(role.toString()))
+                    .collect(Collectors.toList());
+            UserDetails principal = new User(userId, "", authorities);
+            return new UsernamePasswordAuthenticationToken(principal, "", authorities);
+        }
+        UserDetails userDetails = this.userDetailsService.loadUserByUsername(userId);
+        return new UsernamePasswordAuthenticationToken(userDetails,"",userDetails.getAuthorities());
     }
 
     public String resolveToken(HttpServletRequest request){
@@ -86,31 +145,64 @@ public class JwtTokenProvider {
 
 
    public  boolean revokeToken(String token){
-        if(!jwtBlackListRepository.findById(token).isPresent()){
-            JwtBlackList jwt = new JwtBlackList(token);
-            try {
-                jwtBlackListRepository.saveAndFlush(jwt);
-            } catch (DataIntegrityViolationException e) {
-                return true;
-            }
-            return true;
+        Date expiration = getExpiration(token);
+        // an expired or invalid token cannot be used anyway
+        if (expiration == null || expiration.before(Utils.getNow()))
+            return false;
+        return tokenRevocationStore.revoke(token, new Timestamp(expiration.getTime()));
+    }
+
+    /**
+     * the expiration of a token signed by us, even if it is past; null if the token is not valid
+     */
+    public Date getExpiration(String token) {
+        try {
+            return getClaims(TokenRevocationStore.digest(token), token).getExpiration();
+        } catch (ExpiredJwtException e) {
+            return e.getClaims().getExpiration();
+        } catch (JwtException | IllegalArgumentException e) {
+            return null;
         }
-        else return false;
     }
 
     public boolean validateToken(String token) throws InvalidJwtAuthenticationException {
-        try {
+        return getValidClaims(token) != null;
+    }
 
-            Jws<Claims> claims = Jwts.parser().setSigningKey(secretKey).parseClaimsJws(token);
-            if (claims.getBody().getExpiration().before(Utils.getNow()) || jwtBlackListRepository.findById(token).isPresent()){
-                return false;
+    /**
+     * verifies the token once for the whole request
+     * @return the claims of the token, null if it has expired or has been revoked
+     */
+    public Claims getValidClaims(String token) throws InvalidJwtAuthenticationException {
+        try {
+            byte[] digest = TokenRevocationStore.digest(token);
+            Claims claims = getClaims(digest, token);
+            if (claims.getExpiration().before(Utils.getNow()) || tokenRevocationStore.isRevoked(digest)){
+                return null;
             }
-            return true;
+            return claims;
         }catch (JwtException | IllegalArgumentException e){
             throw new InvalidJwtAuthenticationException("Expired or invalid JWT token");
        }
     }
 
+    /**
+     * the claims are shared by the requests with the same token, they must not be changed
+     */
+    private Claims getClaims(byte[] digest, String token) {
+        String key = Utils.toHex(digest);
+        Claims claims = verifiedClaims.getIfPresent(key);
+        if (claims != null && claims.getExpiration().after(Utils.getNow())) {
+            return claims;
+        }
+        // not verified yet, or expired: the parser throws with the claims of the expired token
+        claims = Jwts.parser().setSigningKey(secretKey).parseClaimsJws(token).getBody();
+        if (claims.getExpiration() != null) {
+            verifiedClaims.put(key, claims);
+        }
+        return claims;
+    }
+
     public String doGenerateRefreshToken(Map<String, Object> claims, String subject) {
 
         return Jwts.builder().setClaims(claims).setSubject(subject).setIssuedAt(new Date(System.currentTimeMillis()))
@@ -121,10 +213,7 @@ public class JwtTokenProvider {
     public Claims getAllClaimsFromToken(String token) {
         Claims claims;
         try {
-            claims = Jwts.parser()
-                    .setSigningKey(secretKey)
-                    .parseClaimsJws(token)
-                    .getBody();
+            claims = getClaims(TokenRevocationStore.digest(token), token);
         } catch (Exception e) {
             System.out.println("Could not get all claims Token from passed token");
             claims = null;
@@ -0,0 +1,321 @@
+package it.polito.ai.backend.security;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import it.polito.ai.backend.repositories.*;
+import lombok.Value;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.CommandLineRunner;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PostConstruct;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * the relations read by the authorisation predicates, by id: the students and the teachers of a course,
+ * the course and the members of a team, the team and the owners of a virtual machine and the course of
+ * an assignment, of a virtual machine model and the team of a configuration. Member ids are lower case
+ * and interned, so a check is a hash lookup. Courses, teams and assignments are loaded at startup, the
+ * rest on first use by id only queries; the MembershipInterceptor drops the entries a transaction has
+ * changed once it commits, the others stay. Only the transactions of this instance are seen: the
+ * application is deployed as a single instance, and the periodic reload bounds how long a change made
+ * outside hibernate can be missed
+ */
+@Component
+public class MembershipIndex implements CommandLineRunner {
+
+    public enum Relation {
+        COURSE, TEAM, VIRTUAL_MACHINE, ASSIGNMENT, MODEL, CONFIGURATION
+    }
+
+    @Value
+    static class CourseMembers {
+        Set<String> students;
+        Set<String> teachers;
+    }
+
+    @Value
+    static class Members<K> {
+        K parent;
+        Set<String> members;
+    }
+
+    /**
+     * the entries changed by a transaction: the keys of a relation, and the members whose entries are
+     * dropped wherever they appear, for the memberships removed through a collection never loaded
+     */
+    static class Changes {
+        final Map<Relation, Set<Object>> keys = new EnumMap<>(Relation.class);
+        final Map<Relation, Set<String>> members = new EnumMap<>(Relation.class);
+
+        void key(Relation relation, Object key) {
+            if (key != null) {
+                keys.computeIfAbsent(relation, r -> new HashSet<>()).add(key);
+            }
+        }
+
+        void member(Relation relation, Object member) {
+            if (member != null) {
+                members.computeIfAbsent(relation, r -> new HashSet<>()).add(lower(member.toString()));
+            }
+        }
+
+        boolean isEmpty() {
+            return keys.isEmpty() && members.isEmpty();
+        }
+    }
+
+    private static final int WARM_ATTEMPTS = 3;
+
+    @Autowired
+    CourseRepository courseRepository;
+    @Autowired
+    TeamRepository teamRepository;
+    @Autowired
+    VirtualMachineRepository virtualMachineRepository;
+    @Autowired
+    AssignmentRepository assignmentRepository;
+    @Autowired
+    MembershipInterceptor membershipInterceptor;
+    @Autowired
+    TransactionTemplate transactionTemplate;
+    @Autowired
+    MeterRegistry meterRegistry;
+
+    private final Map<Relation, AtomicLong> generations = new EnumMap<>(Relation.class);
+    private final Map<Relation, Cache<Object, Object>> caches = new EnumMap<>(Relation.class);
+
+    @PostConstruct
+    void init() {
+        for (Relation relation : Relation.values()) {
+            Cache<Object, Object> cache = Caffeine.newBuilder()
+                    .recordStats()
+                    .build();
+            CaffeineCacheMetrics.monitor(meterRegistry, cache, "membership-" + relation.name().toLowerCase(Locale.ROOT).replace('_', '-'));
+            caches.put(relation, cache);
+            generations.put(relation, new AtomicLong());
+        }
+        membershipInterceptor.setListener(this::invalidate);
+    }
+
+    @Override
+    public void run(String... args) {
+        long start = System.currentTimeMillis();
+        Set<Relation> pending = EnumSet.of(Relation.COURSE, Relation.TEAM, Relation.ASSIGNMENT);
+        Map<Relation, Map<Object, Object>> loaded = Collections.emptyMap();
+        for (int attempt = 0; attempt < WARM_ATTEMPTS && !pending.isEmpty(); attempt++) {
+            Map<Relation, Long> seen = new EnumMap<>(Relation.class);
+            generations.forEach((relation, generation) -> seen.put(relation, generation.get()));
+            Map<Relation, Map<Object, Object>> values = load();
+            pending.removeIf(relation -> warm(relation, values.get(relation), seen.get(relation)));
+            loaded = values;
+        }
+        // changed while loading every time, left to the lookups
+        pending.forEach(relation -> caches.get(relation).invalidateAll());
+        System.out.println("membership index: " + loaded.get(Relation.COURSE).size() + " courses, "
+                + loaded.get(Relation.TEAM).size() + " teams, " + loaded.get(Relation.ASSIGNMENT).size()
+                + " assignments loaded in " + (System.currentTimeMillis() - start) + " ms");
+    }
+
+    /**
+     * loads again the relations loaded at startup, in place, and drops the ones loaded on first use
+     */
+    public void reload() {
+        run();
+        invalidate(EnumSet.of(Relation.VIRTUAL_MACHINE, Relation.MODEL, Relation.CONFIGURATION));
+    }
+
+    public boolean isStudentOf(String courseId, String userId) {
+        CourseMembers course = course(courseId);
+        return course != null && course.getStudents().contains(lower(userId));
+    }
+
+    public boolean isTeacherOf(String courseId, String userId) {
+        CourseMembers course = course(courseId);
+        return course != null && course.getTeachers().contains(lower(userId));
+    }
+
+    public boolean isMemberOf(Long teamId, String userId) {
+        Members<String> team = team(teamId);
+        return team != null && team.getMembers().contains(lower(userId));
+    }
+
+    public boolean isOwnerOf(Long vmId, String userId) {
+        Members<Long> vm = virtualMachine(vmId);
+        return vm != null && vm.getMembers().contains(lower(userId));
+    }
+
+    /**
+     * @return the course of the team, null if the team does not exist or has no course
+     */
+    public String getCourseOfTeam(Long teamId) {
+        Members<String> team = team(teamId);
+        return team == null ? null : team.getParent();
+    }
+
+    public Long getTeamOfVirtualMachine(Long vmId) {
+        Members<Long> vm = virtualMachine(vmId);
+        return vm == null ? null : vm.getParent();
+    }
+
+    public String getCourseOfAssignment(Long assignmentId) {
+        return this.<Long, Optional<String>>lookup(Relation.ASSIGNMENT, assignmentId,
+                assignmentRepository::findCourseIdById).orElse(null);
+    }
+
+    public String getCourseOfModel(Long modelId) {
+        return this.<Long, Optional<String>>lookup(Relation.MODEL, modelId,
+                courseRepository::findIdByVirtualMachineModelId).orElse(null);
+    }
+
+    public Long getTeamOfConfiguration(Long configurationId) {
+        return this.<Long, Optional<Long>>lookup(Relation.CONFIGURATION, configurationId,
+                teamRepository::findIdByConfigurationId).orElse(null);
+    }
+
+    /**
+     * drops the relations, a lookup that was loading them in the meantime does not keep its result
+     */
+    public void invalidate(Set<Relation> relations) {
+        for (Relation relation : relations) {
+            generations.get(relation).incrementAndGet();
+            caches.get(relation).invalidateAll();
+        }
+    }
+
+    /**
+     * drops the changed entries only, a lookup of the same relation that was loading in the meantime
+     * does not keep its result
+     */
+    void invalidate(Changes changes) {
+        changes.keys.forEach((relation, keys) -> {
+            generations.get(relation).incrementAndGet();
+            caches.get(relation).invalidateAll(keys);
+        });
+        changes.members.forEach((relation, members) -> {
+            generations.get(relation).incrementAndGet();
+            caches.get(relation).asMap().values().removeIf(value -> hasAny(value, members));
+        });
+    }
+
+    private CourseMembers course(String courseId) {
+        return lookup(Relation.COURSE, courseId, id -> new CourseMembers(
+                freeze(courseRepository.findStudentIdsById(id)),
+                freeze(courseRepository.findTeacherIdsById(id))));
+    }
+
+    private Members<String> team(Long teamId) {
+        return lookup(Relation.TEAM, teamId, id -> new Members<>(
+                teamRepository.findCourseIdById(id).orElse(null),
+                freeze(teamRepository.findMemberIdsById(id))));
+    }
+
+    private Members<Long> virtualMachine(Long vmId) {
+        return lookup(Relation.VIRTUAL_MACHINE, vmId, id -> new Members<>(
+                virtualMachineRepository.findTeamIdById(id).orElse(null),
+                freeze(virtualMachineRepository.findOwnerIdsById(id))));
+    }
+
+    @SuppressWarnings("unchecked")
+    private <K, V> V lookup(Relation relation, K key, Function<K, V> loader) {
+        if (key == null) {
+            return (V) empty(relation);
+        }
+        Cache<Object, Object> cache = caches.get(relation);
+        V value = (V) cache.getIfPresent(key);
+        if (value != null) {
+            return value;
+        }
+        AtomicLong generation = generations.get(relation);
+        long seen = generation.get();
+        value = loader.apply(key);
+        cache.put(key, value);
+        // invalidated while loading, the value may predate the change
+        if (generation.get() != seen) {
+            cache.invalidate(key);
+        }
+        return value;
+    }
+
+    private Map<Relation, Map<Object, Object>> load() {
+        Map<Object, Object> courses = new HashMap<>();
+        Map<Object, Object> teams = new HashMap<>();
+        Map<Object, Object> assignments = new HashMap<>();
+        transactionTemplate.execute(status -> {
+            Map<String, Set<String>> students = new HashMap<>();
+            Map<String, Set<String>> teachers = new HashMap<>();
+            courseRepository.findAllStudentIds().forEach(m -> students.computeIfAbsent(m.getId(), k -> new HashSet<>()).add(m.getMember()));
+            courseRepository.findAllTeacherIds().forEach(m -> teachers.computeIfAbsent(m.getId(), k -> new HashSet<>()).add(m.getMember()));
+            courseRepository.findAllIds().forEach(id -> courses.put(id, new CourseMembers(
+                    freeze(students.get(id)), freeze(teachers.get(id)))));
+
+            Map<Long, String> teamCourses = new HashMap<>();
+            Map<Long, Set<String>> members = new HashMap<>();
+            teamRepository.findAllCourseIds().forEach(m -> teamCourses.put(m.getId(), m.getMember()));
+            teamRepository.findAllMemberIds().forEach(m -> members.computeIfAbsent(m.getId(), k -> new HashSet<>()).add(m.getMember()));
+            teamCourses.forEach((id, course) -> teams.put(id, new Members<>(course, freeze(members.get(id)))));
+
+            assignmentRepository.findAllCourseIds().forEach(m -> assignments.put(m.getId(), Optional.of(m.getMember())));
+            return null;
+        });
+        Map<Relation, Map<Object, Object>> values = new EnumMap<>(Relation.class);
+        values.put(Relation.COURSE, courses);
+        values.put(Relation.TEAM, teams);
+        values.put(Relation.ASSIGNMENT, assignments);
+        return values;
+    }
+
+    /**
+     * @return false if the relation changed while it was loaded, the values may predate the change
+     */
+    private boolean warm(Relation relation, Map<Object, Object> values, long seen) {
+        Cache<Object, Object> cache = caches.get(relation);
+        cache.putAll(values);
+        // removed since, a lookup of the id loads it again
+        cache.asMap().keySet().removeIf(key -> !values.containsKey(key));
+        return generations.get(relation).get() == seen;
+    }
+
+    private static boolean hasAny(Object value, Set<String> members) {
+        if (value instanceof CourseMembers) {
+            CourseMembers course = (CourseMembers) value;
+            return !Collections.disjoint(course.getStudents(), members) || !Collections.disjoint(course.getTeachers(), members);
+        }
+        if (value instanceof Members) {
+            return !Collections.disjoint(((Members<?>) value).getMembers(), members);
+        }
+        return false;
+    }
+
+    private static Object empty(Relation relation) {
+        switch (relation) {
+            case COURSE:
+            case TEAM:
+            case VIRTUAL_MACHINE:
+                return null;
+            default:
+                return Optional.empty();
+        }
+    }
+
+    private static Set<String> freeze(Collection<String> ids) {
+        if (ids == null || ids.isEmpty()) {
+            return Collections.emptySet();
+        }
+        Set<String> set = new HashSet<>(ids.size() * 2);
+        for (String id : ids) {
+            set.add(lower(id).intern());
+        }
+        return Collections.unmodifiableSet(set);
+    }
+
+    private static String lower(String id) {
+        return id == null ? "" : id.toLowerCase(Locale.ROOT);
+    }
+}
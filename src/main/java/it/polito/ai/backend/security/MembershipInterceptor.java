@@ -0,0 +1,207 @@
+package it.polito.ai.backend.security;
+
+import it.polito.ai.backend.entities.*;
+import org.hibernate.EmptyInterceptor;
+import org.hibernate.Hibernate;
+import org.hibernate.cfg.AvailableSettings;
+import org.hibernate.collection.spi.PersistentCollection;
+import org.hibernate.proxy.HibernateProxy;
+import org.hibernate.type.Type;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.io.Serializable;
+import java.util.*;
+import java.util.function.Consumer;
+
+/**
+ * tells the membership index which of its entries a transaction has changed. Every insert, update and
+ * delete of the entities behind the index, and of their membership collections, marks the ids it
+ * touches: the entity itself, the model and the configuration it points to, the courses, teams and
+ * virtual machines added to a member and the entries of a member that may have been removed. They are
+ * dropped from the index once the transaction has committed, whichever service made the change
+ */
+@Component
+public class MembershipInterceptor extends EmptyInterceptor implements HibernatePropertiesCustomizer {
+
+    private volatile Consumer<MembershipIndex.Changes> listener = changes -> { };
+
+    void setListener(Consumer<MembershipIndex.Changes> listener) {
+        this.listener = listener;
+    }
+
+    @Override
+    public void customize(Map<String, Object> hibernateProperties) {
+        hibernateProperties.put(AvailableSettings.INTERCEPTOR, this);
+    }
+
+    @Override
+    public boolean onSave(Object entity, Serializable id, Object[] state, String[] propertyNames, Type[] types) {
+        changed(entity, id, propertyNames, state);
+        return false;
+    }
+
+    @Override
+    public boolean onFlushDirty(Object entity, Serializable id, Object[] currentState, Object[] previousState, String[] propertyNames, Type[] types) {
+        changed(entity, id, propertyNames, currentState, previousState);
+        return false;
+    }
+
+    @Override
+    public void onDelete(Object entity, Serializable id, Object[] state, String[] propertyNames, Type[] types) {
+        changed(entity, id, propertyNames, state);
+    }
+
+    @Override
+    public void onCollectionRecreate(Object collection, Serializable key) {
+        changedCollection(collection, key);
+    }
+
+    @Override
+    public void onCollectionRemove(Object collection, Serializable key) {
+        changedCollection(collection, key);
+    }
+
+    @Override
+    public void onCollectionUpdate(Object collection, Serializable key) {
+        changedCollection(collection, key);
+    }
+
+    private void changed(Object entity, Serializable id, String[] propertyNames, Object[]... states) {
+        if (entity == null) {
+            return;
+        }
+        Class<?> type = Hibernate.getClass(entity);
+        if (type == Course.class) {
+            changed(changes -> {
+                changes.key(MembershipIndex.Relation.COURSE, id);
+                referenced(changes, MembershipIndex.Relation.MODEL, "virtualMachineModel", propertyNames, states);
+            });
+        } else if (type == Team.class) {
+            changed(changes -> {
+                changes.key(MembershipIndex.Relation.TEAM, id);
+                referenced(changes, MembershipIndex.Relation.CONFIGURATION, "configuration", propertyNames, states);
+            });
+        } else if (type == VirtualMachine.class) {
+            changed(changes -> changes.key(MembershipIndex.Relation.VIRTUAL_MACHINE, id));
+        } else if (type == VirtualMachineModel.class) {
+            changed(changes -> changes.key(MembershipIndex.Relation.MODEL, id));
+        } else if (type == Configuration.class) {
+            changed(changes -> changes.key(MembershipIndex.Relation.CONFIGURATION, id));
+        } else if (type == Assignment.class) {
+            changed(changes -> changes.key(MembershipIndex.Relation.ASSIGNMENT, id));
+        }
+    }
+
+    private void changedCollection(Object collection, Serializable key) {
+        if (!(collection instanceof PersistentCollection)) {
+            return;
+        }
+        PersistentCollection persistent = (PersistentCollection) collection;
+        String role = persistent.getRole();
+        if (role == null) {
+            return;
+        }
+        switch (role.substring(role.lastIndexOf('.', role.lastIndexOf('.') - 1) + 1)) {
+            case "Student.courses":
+            case "Teacher.courses":
+                changed(changes -> member(changes, MembershipIndex.Relation.COURSE, key, persistent));
+                break;
+            case "Student.teams":
+                changed(changes -> member(changes, MembershipIndex.Relation.TEAM, key, persistent));
+                break;
+            case "Student.virtual_machines":
+                changed(changes -> member(changes, MembershipIndex.Relation.VIRTUAL_MACHINE, key, persistent));
+                break;
+            case "Course.students":
+            case "Course.teachers":
+                changed(changes -> changes.key(MembershipIndex.Relation.COURSE, key));
+                break;
+            case "Team.members":
+                changed(changes -> changes.key(MembershipIndex.Relation.TEAM, key));
+                break;
+            case "VirtualMachine.owners":
+                changed(changes -> changes.key(MembershipIndex.Relation.VIRTUAL_MACHINE, key));
+                break;
+            default:
+                // the other collections are mapped by the foreign key of their elements
+        }
+    }
+
+    /**
+     * the entries the member is in, for the ones removed, and the elements of the collection, for the ones added
+     */
+    private static void member(MembershipIndex.Changes changes, MembershipIndex.Relation relation, Serializable member, PersistentCollection collection) {
+        changes.member(relation, member);
+        if (collection.wasInitialized() && collection instanceof Collection) {
+            for (Object element : (Collection<?>) collection) {
+                changes.key(relation, idOf(element));
+            }
+        }
+    }
+
+    /**
+     * the ids of the entity referenced by the property, before and after the change
+     */
+    private static void referenced(MembershipIndex.Changes changes, MembershipIndex.Relation relation, String property, String[] propertyNames, Object[]... states) {
+        int index = Arrays.asList(propertyNames).indexOf(property);
+        if (index < 0) {
+            return;
+        }
+        for (Object[] state : states) {
+            if (state != null) {
+                changes.key(relation, idOf(state[index]));
+            }
+        }
+    }
+
+    private static Object idOf(Object entity) {
+        if (entity instanceof HibernateProxy) {
+            return ((HibernateProxy) entity).getHibernateLazyInitializer().getIdentifier();
+        }
+        if (entity instanceof Course) {
+            return ((Course) entity).getId();
+        }
+        if (entity instanceof Team) {
+            return ((Team) entity).getId();
+        }
+        if (entity instanceof VirtualMachine) {
+            return ((VirtualMachine) entity).getId();
+        }
+        if (entity instanceof VirtualMachineModel) {
+            return ((VirtualMachineModel) entity).getId();
+        }
+        if (entity instanceof Configuration) {
+            return ((Configuration) entity).getId();
+        }
+        return null;
+    }
+
+    private void changed(Consumer<MembershipIndex.Changes> change) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            MembershipIndex.Changes changes = new MembershipIndex.Changes();
+            change.accept(changes);
+            listener.accept(changes);
+            return;
+        }
+        // one synchronization per transaction, collecting the entries of all its changes
+        MembershipIndex.Changes changes = (MembershipIndex.Changes) TransactionSynchronizationManager.getResource(this);
+        if (changes == null) {
+            MembershipIndex.Changes pending = new MembershipIndex.Changes();
+            TransactionSynchronizationManager.bindResource(this, pending);
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+                @Override
+                public void afterCompletion(int status) {
+                    TransactionSynchronizationManager.unbindResourceIfPossible(MembershipInterceptor.this);
+                    if (status == STATUS_COMMITTED && !pending.isEmpty()) {
+                        listener.accept(pending);
+                    }
+                }
+            });
+            changes = pending;
+        }
+        change.accept(changes);
+    }
+}
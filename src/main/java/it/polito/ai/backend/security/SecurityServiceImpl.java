@@ -1,6 +1,6 @@
 package it.polito.ai.backend.security;
 
-import it.polito.ai.backend.entities.Student;
+import it.polito.ai.backend.entities.LatestPaperId;
 import it.polito.ai.backend.entities.User;
 import it.polito.ai.backend.repositories.*;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -14,26 +14,20 @@ import javax.transaction.Transactional;
 @Transactional
 public class SecurityServiceImpl implements SecurityService {
 
-    @Autowired
-    CourseRepository courseRepository;
-    @Autowired
-    TeamRepository teamRepository;
     @Autowired
     TeacherRepository teacherRepository;
     @Autowired
-    VirtualMachineRepository virtualMachineRepository;
-    @Autowired
-    VirtualMachineModelRepository virtualMachineModelRepository;
-    @Autowired
-    ConfigurationRepository configurationRepository;
-    @Autowired
-    AssignmentRepository exerciseRepository;
-    @Autowired
     PaperRepository paperRepository;
     @Autowired
+    LatestPaperRepository latestPaperRepository;
+    @Autowired
     TokenRepository tokenRepository;
     @Autowired
     StudentRepository studentRepository;
+    @Autowired
+    DecisionCache decisionCache;
+    @Autowired
+    MembershipIndex membershipIndex;
 
 
     /**
@@ -56,11 +50,7 @@ public class SecurityServiceImpl implements SecurityService {
     @Override
     public boolean isEnrolled(String courseId) {
         String userId = this.getId();
-        return courseRepository.findById(courseId)
-                .map(c -> c.getStudents()
-                        .stream()
-                        .anyMatch(s -> s.getId().equalsIgnoreCase(userId)))
-                .orElse(false);
+        return membershipIndex.isStudentOf(courseId, userId);
     }
 
     /**
@@ -71,11 +61,7 @@ public class SecurityServiceImpl implements SecurityService {
     @Override
     public boolean isPartOf(Long teamId) {
         String userId = this.getId();
-        return teamRepository.findById(teamId)
-                .map(t -> t.getMembers()
-                        .stream()
-                        .anyMatch(s -> s.getId().equalsIgnoreCase(userId)))
-                .orElse(false);
+        return membershipIndex.isMemberOf(teamId, userId);
     }
 
     /**
@@ -86,12 +72,7 @@ public class SecurityServiceImpl implements SecurityService {
     @Override
     public boolean isTaught(String courseId) {
         String userId = this.getId();
-        return courseRepository.findById(courseId)
-                .map(c -> c.getTeachers()
-                        .stream()
-                        .anyMatch(t -> t.getId().equalsIgnoreCase(userId)))
-                .orElse(false);
-
+        return membershipIndex.isTeacherOf(courseId, userId);
     }
 
 
@@ -104,13 +85,7 @@ public class SecurityServiceImpl implements SecurityService {
     @Override
     public boolean canManage(Long configurationId) {
         String userId = this.getId();
-        return configurationRepository.findById(configurationId)
-                .filter(c1 -> c1.getTeam() != null)
-                .filter(c2 -> c2.getTeam().getCourse() != null)
-                .map(c -> c.getTeam().getCourse().getTeachers()
-                        .stream()
-                        .anyMatch(t -> t.getId().equalsIgnoreCase(userId)))
-                .orElse(false);
+        return membershipIndex.isTeacherOf(membershipIndex.getCourseOfTeam(membershipIndex.getTeamOfConfiguration(configurationId)), userId);
     }
 
     /**
@@ -121,11 +96,7 @@ public class SecurityServiceImpl implements SecurityService {
     @Override
     public boolean isOwnerOf(Long vmId) {
         String userId = this.getId();
-        return virtualMachineRepository.findById(vmId)
-                .map(vm -> vm.getOwners()
-                        .stream()
-                        .anyMatch(o -> o.getId().equalsIgnoreCase(userId)))
-                .orElse(false);
+        return membershipIndex.isOwnerOf(vmId, userId);
     }
 
     /**
@@ -136,12 +107,7 @@ public class SecurityServiceImpl implements SecurityService {
     @Override
     public boolean canUse(Long vmId) {
         String userId = this.getId();
-        return virtualMachineRepository.findById(vmId)
-                .filter(vm -> vm.getTeam() != null)
-                .map(vm -> vm.getTeam().getMembers()
-                        .stream()
-                        .anyMatch(s -> s.getId().equalsIgnoreCase(userId)))
-                .orElse(false);
+        return membershipIndex.isMemberOf(membershipIndex.getTeamOfVirtualMachine(vmId), userId);
     }
 
     /**
@@ -152,13 +118,7 @@ public class SecurityServiceImpl implements SecurityService {
     @Override
     public boolean canConnect(Long vmId) {
         String userId = this.getId();
-        return virtualMachineRepository.findById(vmId)
-                .filter(vm1 -> vm1.getTeam() != null)
-                .filter(vm2 -> vm2.getTeam().getCourse() != null)
-                .map(virtualMachine -> virtualMachine.getTeam().getCourse().getTeachers()
-                        .stream()
-                        .anyMatch(t -> t.getId().equalsIgnoreCase(userId)))
-                .orElse(false);
+        return membershipIndex.isTeacherOf(membershipIndex.getCourseOfTeam(membershipIndex.getTeamOfVirtualMachine(vmId)), userId);
     }
 
     /**
@@ -169,12 +129,7 @@ public class SecurityServiceImpl implements SecurityService {
     @Override
     public boolean isHelping(Long teamId) {
         String userId = this.getId();
-        return teamRepository.findById(teamId)
-                .filter(t -> t.getCourse() != null)
-                .map(t -> t.getCourse().getTeachers()
-                        .stream()
-                        .anyMatch(teacher -> teacher.getId().equalsIgnoreCase(userId)))
-                .orElse(false);
+        return membershipIndex.isTeacherOf(membershipIndex.getCourseOfTeam(teamId), userId);
     }
 
     /**
@@ -185,12 +140,7 @@ public class SecurityServiceImpl implements SecurityService {
     @Override
     public boolean hasDefined(Long modelId) {
         String userId = this.getId();
-        return virtualMachineModelRepository.findById(modelId)
-                .filter(m1 -> m1.getCourse() != null)
-                .map(m -> m.getCourse().getTeachers()
-                        .stream()
-                        .anyMatch(t -> t.getId().equalsIgnoreCase(userId)))
-                .orElse(false);
+        return membershipIndex.isTeacherOf(membershipIndex.getCourseOfModel(modelId), userId);
     }
 
     /**
@@ -201,12 +151,7 @@ public class SecurityServiceImpl implements SecurityService {
     @Override
     public boolean canAccess(Long modelId) {
         String userId = this.getId();
-        return virtualMachineModelRepository.findById(modelId)
-                .filter(m1 -> m1.getCourse() != null)
-                .map(m -> m.getCourse().getStudents()
-                        .stream()
-                        .anyMatch(s -> s.getId().equalsIgnoreCase(userId)))
-                .orElse(false);
+        return membershipIndex.isStudentOf(membershipIndex.getCourseOfModel(modelId), userId);
     }
 
     /**
@@ -216,11 +161,7 @@ public class SecurityServiceImpl implements SecurityService {
     @Override
     public boolean canView(Long exerciseId) {
         String userId = this.getId();
-        return exerciseRepository.findById(exerciseId)
-                .map(exercise -> exercise.getCourse().getStudents()
-                    .stream()
-                    .anyMatch(s -> s.getId().equalsIgnoreCase(userId)))
-                .orElse(false);
+        return membershipIndex.isStudentOf(membershipIndex.getCourseOfAssignment(exerciseId), userId);
     }
     /**
      *
@@ -229,11 +170,7 @@ public class SecurityServiceImpl implements SecurityService {
     @Override
     public boolean canOpen(Long exerciseId) {
         String userId = this.getId();
-        return exerciseRepository.findById(exerciseId)
-                .map(exercise -> exercise.getCourse().getTeachers()
-                        .stream()
-                        .anyMatch(t -> t.getId().equalsIgnoreCase(userId)))
-                .orElse(false);
+        return membershipIndex.isTeacherOf(membershipIndex.getCourseOfAssignment(exerciseId), userId);
     }
 
     /**
@@ -242,10 +179,7 @@ public class SecurityServiceImpl implements SecurityService {
      */
     public boolean isDone(Long exerciseId) {
         String userId = this.getId();
-        return exerciseRepository.findById(exerciseId).map(
-                e -> e.getPapers()
-        .stream().anyMatch(assignment -> assignment.getStudent().getId().equalsIgnoreCase(userId)))
-        .orElse(false);
+        return decisionCache.decide("isDone", userId, exerciseId, () -> latestPaperRepository.existsById(new LatestPaperId(userId, exerciseId)));
     }
 
     @Override
@@ -255,9 +189,9 @@ public class SecurityServiceImpl implements SecurityService {
      */
     public boolean isAuthor(Long assignmentId) {
         String userId = this.getId();
-        return paperRepository.findById(assignmentId)
-                .map(a -> a.getStudent().getId().equalsIgnoreCase(userId))
-                .orElse(false);
+        return decisionCache.decide("isAuthor", userId, assignmentId, () -> paperRepository.findById(assignmentId)
+                    .map(a -> a.getStudent().getId().equalsIgnoreCase(userId))
+                    .orElse(false));
     }
 
     @Override
@@ -267,10 +201,10 @@ public class SecurityServiceImpl implements SecurityService {
      */
     public boolean isReview(Long assignmentId) {
         String userId = this.getId();
-        return paperRepository.findById(assignmentId)
-                .map(a -> a.getAssignment().getCourse().getTeachers()
-                .stream().anyMatch(teacher -> teacher.getId().equalsIgnoreCase(userId)))
-                .orElse(false);
+        return decisionCache.decide("isReview", userId, assignmentId, () -> paperRepository.findById(assignmentId)
+                    .map(a -> a.getAssignment().getCourse().getTeachers()
+                    .stream().anyMatch(teacher -> teacher.getId().equalsIgnoreCase(userId)))
+                    .orElse(false));
     }
 
     @Override
@@ -280,8 +214,8 @@ public class SecurityServiceImpl implements SecurityService {
      */
     public boolean hasToken(String tokenId) {
         String userId = this.getId();
-        return tokenRepository.findById(tokenId)
-                .map(t -> t.getStudentId().equalsIgnoreCase(userId)).orElse(false);
+        return decisionCache.decide("hasToken", userId, tokenId, () -> tokenRepository.findById(tokenId)
+                    .map(t -> t.getStudentId().equalsIgnoreCase(userId)).orElse(false));
     }
 
     /**
@@ -292,12 +226,7 @@ public class SecurityServiceImpl implements SecurityService {
     @Override
     public boolean canSee(Long configurationId) {
         String userId = this.getId();
-        return configurationRepository.findById(configurationId)
-                .filter(c -> c.getTeam() != null)
-                .filter(c -> c.getTeam().getMembers().size() > 0)
-                .map(c -> c.getTeam().getMembers()
-                        .stream().map(Student::getId).anyMatch(id -> id.equalsIgnoreCase(userId)))
-                .orElse(false);
+        return membershipIndex.isMemberOf(membershipIndex.getTeamOfConfiguration(configurationId), userId);
     }
 
     /**
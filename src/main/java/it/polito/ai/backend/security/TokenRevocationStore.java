@@ -0,0 +1,148 @@
+package it.polito.ai.backend.security;
+
+import it.polito.ai.backend.entities.JwtBlackList;
+import it.polito.ai.backend.repositories.JwtBlackListRepository;
+import it.polito.ai.backend.services.Utils;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PostConstruct;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * the revoked tokens, stored by their sha-256 until they expire. A bloom filter of the stored ones answers
+ * most checks of a token that has not been revoked without a query; it is rebuilt when the expired
+ * revocations are purged, since nothing can be removed from it, and refreshed periodically with the
+ * revocations stored since the last load, so the ones made by other instances are seen as well
+ */
+@Component
+public class TokenRevocationStore {
+
+    @Autowired
+    JwtBlackListRepository jwtBlackListRepository;
+    @Autowired
+    TransactionTemplate transactionTemplate;
+
+    @Value("${security.jwt.revocation.expected:100000}")
+    long expected;
+    @Value("${security.jwt.revocation.false-positives:0.001}")
+    double falsePositives;
+    /**
+     * how far before the last load a refresh looks, for the revocations committed late or by a clock behind
+     */
+    @Value("${security.jwt.revocation.refresh-slack:1m}")
+    Duration refreshSlack;
+
+    private volatile BloomFilter filter;
+    /**
+     * the filter being rebuilt, revocations made meanwhile go to both
+     */
+    private volatile BloomFilter next;
+    /**
+     * when the last rebuild or refresh started reading the stored revocations
+     */
+    private volatile long loaded;
+
+    @PostConstruct
+    void init() {
+        rebuild();
+    }
+
+    public boolean isRevoked(String token) {
+        return isRevoked(digest(token));
+    }
+
+    boolean isRevoked(byte[] digest) {
+        if (!filter.mightContain(digest)) {
+            return false;
+        }
+        return jwtBlackListRepository.existsById(Utils.toHex(digest));
+    }
+
+    /**
+     * @return false if the token had already been revoked
+     */
+    public boolean revoke(String token, Timestamp expiry) {
+        byte[] digest = digest(token);
+        String id = Utils.toHex(digest);
+        if (jwtBlackListRepository.existsById(id)) {
+            return false;
+        }
+        try {
+            jwtBlackListRepository.saveAndFlush(new JwtBlackList(id, expiry, Utils.getNow()));
+        } catch (DataIntegrityViolationException e) {
+            // revoked by a concurrent request
+        }
+        added(digest);
+        return true;
+    }
+
+    /**
+     * removes the revocations of the tokens expired by now, they would be rejected anyway
+     */
+    public int purge() {
+        Integer deleted = transactionTemplate.execute(status -> jwtBlackListRepository.deleteExpired(Utils.getNow()));
+        rebuild();
+        return deleted == null ? 0 : deleted;
+    }
+
+    /**
+     * adds to the filter the revocations stored since the last load, by any instance
+     * @return the number of revocations read
+     */
+    public synchronized int refresh() {
+        Timestamp now = Utils.getNow();
+        List<String> ids = jwtBlackListRepository.findIdsByRevokedSince(new Timestamp(loaded - refreshSlack.toMillis()), now);
+        for (String id : ids) {
+            added(fromHex(id));
+        }
+        loaded = now.getTime();
+        return ids.size();
+    }
+
+    private synchronized void rebuild() {
+        BloomFilter rebuilt = new BloomFilter(expected, falsePositives);
+        next = rebuilt;
+        Timestamp now = Utils.getNow();
+        List<String> ids = jwtBlackListRepository.findIdsByExpiryAfter(now);
+        for (String id : ids) {
+            rebuilt.add(fromHex(id));
+        }
+        filter = rebuilt;
+        next = null;
+        loaded = now.getTime();
+        System.out.println("Token revocation filter built with " + ids.size() + " tokens");
+    }
+
+    private void added(byte[] digest) {
+        BloomFilter rebuilding = next;
+        if (rebuilding != null) {
+            rebuilding.add(digest);
+        }
+        filter.add(digest);
+    }
+
+    static byte[] digest(String token) {
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.US_ASCII));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static byte[] fromHex(String hex) {
+        byte[] bytes = new byte[hex.length() / 2];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = (byte) Integer.parseInt(hex.substring(2 * i, 2 * i + 2), 16);
+        }
+        return bytes;
+    }
+}
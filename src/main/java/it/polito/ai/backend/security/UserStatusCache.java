@@ -0,0 +1,66 @@
+package it.polito.ai.backend.security;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import it.polito.ai.backend.repositories.UserRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.annotation.PostConstruct;
+import java.time.Duration;
+
+/**
+ * whether the accounts are enabled, read by the stateless jwt authentication in place of the whole user.
+ * A deleted account is not enabled; sign up, confirmation and deletion evict the account, the expiration
+ * only bounds the changes made elsewhere
+ */
+@Component
+public class UserStatusCache {
+
+    @Autowired
+    UserRepository userRepository;
+    @Autowired
+    MeterRegistry meterRegistry;
+
+    @Value("${security.jwt.user-status.max-size:10000}")
+    long maxSize;
+    @Value("${security.jwt.user-status.expiration:5m}")
+    Duration expiration;
+
+    private Cache<String, Boolean> cache;
+
+    @PostConstruct
+    void init() {
+        cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(expiration)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "user-status");
+    }
+
+    public boolean isEnabled(String userId) {
+        return cache.get(userId, id -> userRepository.findEnabledById(id).orElse(false));
+    }
+
+    /**
+     * once the transaction has committed, a reader in between could cache the old status again
+     */
+    public void evict(String userId) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+                @Override
+                public void afterCommit() {
+                    cache.invalidate(userId);
+                }
+            });
+        } else {
+            cache.invalidate(userId);
+        }
+    }
+}
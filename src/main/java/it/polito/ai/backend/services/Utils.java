@@ -1,21 +1,26 @@
 package it.polito.ai.backend.services;
 
-import org.apache.tika.config.TikaConfig;
-import org.apache.tika.exception.TikaException;
-import org.apache.tika.io.TikaInputStream;
-import org.apache.tika.metadata.Metadata;
-import org.apache.tika.mime.MediaType;
+import org.springframework.core.io.InputStreamSource;
 import org.springframework.http.HttpStatus;
 import org.springframework.web.multipart.MultipartFile;
 import org.springframework.web.server.ResponseStatusException;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.sql.Timestamp;
 import java.time.LocalDateTime;
 import java.time.ZoneId;
+import java.util.Arrays;
 
 public class Utils {
 
+    /**
+     * how many bytes from the head of an upload are enough to detect its type
+     */
+    public static final int SNIFF_LENGTH = 8 * 1024;
+
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
     public static Timestamp getNow() {
         long nowLong = LocalDateTime.now().atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
         return new Timestamp(nowLong);
@@ -25,24 +30,33 @@ public class Utils {
         if (file.isEmpty()) {
             throw new ResponseStatusException(HttpStatus.BAD_REQUEST);
         }
-        byte[] byteObjects = new byte[file.getBytes().length];
-
-        int i = 0;
+        return file.getBytes();
+    }
 
-        for (byte b : file.getBytes()){
-            byteObjects[i++] = b;
+    /**
+     * reads at most SNIFF_LENGTH bytes, the rest of the content is left untouched
+     */
+    public static byte[] readPrefix(InputStreamSource source) throws IOException {
+        byte[] prefix = new byte[SNIFF_LENGTH];
+        int length = 0;
+        try (InputStream in = source.getInputStream()) {
+            int read;
+            while (length < prefix.length && (read = in.read(prefix, length, prefix.length - length)) != -1) {
+                length += read;
+            }
         }
-        return byteObjects;
+        return length == prefix.length ? prefix : Arrays.copyOf(prefix, length);
     }
 
-    public static void checkTypeImage(MultipartFile file) throws TikaException, IOException {
-        TikaConfig tika = new TikaConfig();
-        Metadata metadata = new Metadata();
-        metadata.set(Metadata.RESOURCE_NAME_KEY, file.getOriginalFilename());
-        MediaType mimeType = tika.getDetector().detect(TikaInputStream.get(file.getBytes()), metadata);
-        String type = mimeType.toString();
-        if (!type.equalsIgnoreCase("image/png") && !type.equalsIgnoreCase("image/jpg") && !type.equalsIgnoreCase("image/jpeg")) {
-            throw new ResponseStatusException(HttpStatus.UNSUPPORTED_MEDIA_TYPE, type);
+    /**
+     * lower case, two digits per byte: the form of the content and token digests used as ids
+     */
+    public static String toHex(byte[] bytes) {
+        char[] hex = new char[bytes.length * 2];
+        for (int i = 0; i < bytes.length; i++) {
+            hex[2 * i] = HEX[(bytes[i] >> 4) & 0xf];
+            hex[2 * i + 1] = HEX[bytes[i] & 0xf];
         }
+        return new String(hex);
     }
 }
@@ -2,11 +2,14 @@ package it.polito.ai.backend.services.assignment;
 
 import it.polito.ai.backend.dtos.*;
 
+import org.springframework.core.io.InputStreamSource;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.IOException;
 import java.sql.Timestamp;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 public interface AssignmentService {
@@ -27,15 +30,31 @@ public interface AssignmentService {
     Optional<CourseDTO> getCourse(Long assignmentId);
     void setPapersNullForAssignment(Long assignmentId);
 
+    /**
+     * adds the NULL papers of every open assignment of the course for the given, just enrolled, students
+     */
+    void setPapersNullForStudents(String courseId, Collection<String> studentIds);
+
     boolean setPapersReadForStudentAndAssignment(Long assignmentId, String studentId);
 
     Optional<StudentDTO> getStudentForPaper(Long paperId);
     List<PaperDTO> getLastPapers(Long assignmentId);
-    PaperDTO addPaperByte(Timestamp published,
-                               PaperStatus state,
-                               boolean flag, String score,
-                               byte[] image,
-                               String studentId, Long assignmentId);
+
+    /**
+     * counters of the current papers by state, cached until a paper of the assignment changes
+     */
+    AssignmentStatsDTO getStats(Long assignmentId);
+    PaperDTO addPaper(Timestamp published,
+                      PaperStatus state,
+                      boolean flag, String score,
+                      InputStreamSource image,
+                      String studentId, Long assignmentId) throws IOException;
+    /**
+     * teacher, the reviews are added in one transaction, each entry gets its own result and a failed entry
+     * does not stop the others; images maps the names used by the entries to their parts, a part that is not
+     * a valid image fails only the entries naming it, with the status its check failed with
+     */
+    List<PaperReviewResult> reviewPapers(Long assignmentId, List<PaperReviewRequest> reviews, Map<String, MultipartFile> images);
     /** student*/
     boolean checkPaper(Long assignmentId, String studentId) ;
 
@@ -3,16 +3,25 @@ package it.polito.ai.backend.services.assignment;
 import it.polito.ai.backend.dtos.*;
 import it.polito.ai.backend.entities.*;
 import it.polito.ai.backend.repositories.*;
+import it.polito.ai.backend.services.deadline.DeadlineService;
+import it.polito.ai.backend.services.image.ImageIngestService;
+import it.polito.ai.backend.services.image.ImageService;
+import it.polito.ai.backend.services.image.PreviewService;
+import it.polito.ai.backend.services.media.MediaInspectionService;
 import it.polito.ai.backend.services.team.CourseNotEnabledException;
 import it.polito.ai.backend.services.team.CourseNotFoundException;
 import it.polito.ai.backend.services.team.StudentNotEnrolledException;
 import it.polito.ai.backend.services.team.StudentNotFoundException;
 import org.modelmapper.ModelMapper;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.io.InputStreamSource;
+import org.springframework.http.HttpStatus;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.server.ResponseStatusException;
 
+import javax.persistence.EntityManager;
 import javax.transaction.Transactional;
 import java.io.IOException;
 import java.sql.Timestamp;
@@ -35,7 +44,23 @@ public class AssignmentServiceImpl implements AssignmentService {
     @Autowired
     PaperRepository paperRepository;
     @Autowired
+    LatestPaperRepository latestPaperRepository;
+    @Autowired
+    ImageService imageService;
+    @Autowired
+    PreviewService previewService;
+    @Autowired
+    ImageIngestService imageIngestService;
+    @Autowired
+    MediaInspectionService mediaInspectionService;
+    @Autowired
     ModelMapper modelMapper;
+    @Autowired
+    EntityManager entityManager;
+    @Autowired
+    DeadlineService deadlineService;
+    @Autowired
+    AssignmentStatsCache assignmentStatsCache;
 
 
     @Override
@@ -56,8 +81,12 @@ public class AssignmentServiceImpl implements AssignmentService {
             assignment.setPublished(published);
             assignment.setExpired(expired);
             assignment.setCourse(course.get());
-            assignment.setImage(Utils.getBytes(file));
+            Image image = imageIngestService.ingest(file);
+            assignment.setImage(image);
+            imageService.retain(image);
+            previewService.requestPreview(image.getId());
             assignmentRepository.save(assignment);
+            deadlineService.schedule(DeadlineType.ASSIGNMENT_EXPIRY, assignment.getId().toString(), expired);
             return modelMapper.map(assignment,AssignmentDTO.class);
 
     }
@@ -66,47 +95,36 @@ public class AssignmentServiceImpl implements AssignmentService {
     @PreAuthorize("(hasRole('TEACHER') and @securityServiceImpl.canOpen(#assignmentId)) or (hasRole('STUDENT') and @securityServiceImpl.canView(#assignmentId) " +
             "and @securityServiceImpl.isDone(#assignmentId) and @securityServiceImpl.isAuthorized(#studentId))")
     public List<PaperDTO> getPaperByStudentAndAssignment(String studentId, Long assignmentId) {
-        Optional<Student> student = studentRepository.findById(studentId);
-        if(!student.isPresent())
+        if(!studentRepository.existsById(studentId))
             throw new StudentNotFoundException("Student not found with id: "+studentId);
-        Optional<Assignment> assignment = assignmentRepository.findById(assignmentId);
-        if(!assignment.isPresent())
+        if(!assignmentRepository.existsById(assignmentId))
             throw new AssignmentNotFoundException("assignment not found for id : "+assignmentId.toString());
 
-        return paperRepository.findByStudentAndAssignment(student.get(),assignment.get())
+        // sorted by the database, no paper entity nor image is loaded
+        return withPreviews(paperRepository.findHistory(studentId, assignmentId)
                 .stream()
-                .sorted(Comparator.comparing(Paper::getPublished,Timestamp::compareTo))
-                .map(a -> modelMapper.map(a, PaperDTO.class))
-                .collect(Collectors.toList());
+                .map(AssignmentServiceImpl::toDTO)
+                .collect(Collectors.toList()));
     }
 
     @Override
     @PreAuthorize("hasRole('TEACHER') and @securityServiceImpl.canOpen(#assignmentId)")
-    public List<PaperDTO> getLastPapers(Long assignmentId) {
-        Optional<Assignment> assignment = assignmentRepository.findById(assignmentId);
-        if(!assignment.isPresent())
+    public AssignmentStatsDTO getStats(Long assignmentId) {
+        if(!assignmentRepository.existsById(assignmentId))
             throw  new AssignmentNotFoundException(assignmentId.toString());
 
+        return assignmentStatsCache.get(assignmentId);
+    }
 
-        List<Student> students = assignment.get().getPapers().stream().map(p -> p.getStudent())
-                .distinct().collect(Collectors.toList());
-
-
-        List<Paper> lastPapers = new ArrayList<>();
-
-        for (Student student:students) {
-            Paper lastPaper = paperRepository.findByStudentAndAssignment(student,assignment.get())
-                    .stream()
-                    .sorted(Comparator.comparing(Paper::getPublished,Timestamp::compareTo))
-                    .reduce((a1,a2)-> a2).orElse(null);
-            if(lastPaper != null)
-                lastPapers.add(lastPaper);
-        }
-
+    @Override
+    @PreAuthorize("hasRole('TEACHER') and @securityServiceImpl.canOpen(#assignmentId)")
+    public List<PaperDTO> getLastPapers(Long assignmentId) {
+        if(!assignmentRepository.existsById(assignmentId))
+            throw  new AssignmentNotFoundException(assignmentId.toString());
 
-        return lastPapers.stream()
-                .map(a -> modelMapper.map(a, PaperDTO.class))
-                .collect(Collectors.toList());
+        return withPreviews(latestPaperRepository.findSummariesByAssignment(assignmentId).stream()
+                .map(AssignmentServiceImpl::toDTO)
+                .collect(Collectors.toList()));
 
     }
 
@@ -115,14 +133,14 @@ public class AssignmentServiceImpl implements AssignmentService {
     @PreAuthorize("(hasRole('TEACHER') and @securityServiceImpl.canOpen(#assignmentId)) or (hasRole('STUDENT') and @securityServiceImpl.canView(#assignmentId))")
     public Optional<AssignmentDTO> getAssignment(Long assignmentId) {
         return assignmentRepository.findById(assignmentId)
-                .map(e -> modelMapper.map(e, AssignmentDTO.class));
+                .map(e -> withPreview(modelMapper.map(e, AssignmentDTO.class)));
     }
 
     @Override
     @PreAuthorize("(hasRole('TEACHER') and @securityServiceImpl.isReview(#paperId)) or (hasRole('STUDENT') and @securityServiceImpl.isAuthor(#paperId))")
     public Optional<PaperDTO> getPaper(Long paperId) {
         return paperRepository.findById(paperId)
-                .map(a -> modelMapper.map(a, PaperDTO.class));
+                .map(a -> withPreview(modelMapper.map(a, PaperDTO.class)));
 
     }
 
@@ -144,7 +162,7 @@ public class AssignmentServiceImpl implements AssignmentService {
         }
         return course.get()
                 .getAssignments().stream()
-                .map(e -> modelMapper.map(e, AssignmentDTO.class ))
+                .map(e -> withPreview(modelMapper.map(e, AssignmentDTO.class )))
                 .collect(Collectors.toList());
     }
 
@@ -162,18 +180,42 @@ public class AssignmentServiceImpl implements AssignmentService {
         Optional<Assignment> exercise = assignmentRepository.findById(paperId);
         if(!exercise.isPresent())
             throw  new AssignmentNotFoundException(paperId.toString());
+        Assignment assignment = exercise.get();
         // For each student enrolled to the course add an paper with state null
         /* There must be no others papers*/
-       List<Student> students= exercise.get().getCourse().getStudents();
-        for (Student student:students) {
-            List<Paper> paper = paperRepository.findByStudentAndAssignment(student,exercise.get());
-            if(paper.isEmpty()){
-                addPaperByte(
-                        Utils.getNow(),
-                        PaperStatus.NULL,
-                        true,null,exercise.get().getImage(),student.getId(),paperId);
-            }
+        seedNullPapers(assignment, studentRepository.findIdsWithoutPaper(assignment.getCourse().getId(), assignment.getId()), Utils.getNow());
+    }
+
+    @Override
+    @PreAuthorize("hasRole('TEACHER') and @securityServiceImpl.isTaught(#courseId)")
+    public void setPapersNullForStudents(String courseId, Collection<String> studentIds) {
+        if(studentIds.isEmpty())
+            return;
+        Timestamp now = Utils.getNow();
+        List<Assignment> assignments = assignmentRepository.findByCourseIdAndExpiredAfter(courseId, now);
+        if(assignments.isEmpty())
+            return;
+        Set<LatestPaperId> existing = new HashSet<>(latestPaperRepository.findIds(studentIds,
+                assignments.stream().map(Assignment::getId).collect(Collectors.toList())));
+        for (Assignment assignment : assignments) {
+            seedNullPapers(assignment, studentIds.stream()
+                    .filter(id -> !existing.contains(new LatestPaperId(id, assignment.getId())))
+                    .collect(Collectors.toList()), now);
+        }
+    }
+
+    /**
+     * inserted in jdbc batches, the students are only referenced and never loaded
+     */
+    private void seedNullPapers(Assignment assignment, List<String> studentIds, Timestamp now) {
+        for (String studentId : studentIds) {
+            /* every placeholder shares the assignment content instead of copying it */
+            Paper paper = Paper.detached(now, PaperStatus.NULL, true, assignment.getImage(), entityManager.getReference(Student.class, studentId), assignment);
+            entityManager.persist(paper);
+            entityManager.persist(new LatestPaper(new LatestPaperId(studentId, assignment.getId()), paper));
         }
+        imageService.retain(assignment.getImage(), studentIds.size());
+        assignmentStatsCache.evict(assignment.getId());
 
     }
 
@@ -188,18 +230,14 @@ public class AssignmentServiceImpl implements AssignmentService {
         Optional<Assignment> assignment = assignmentRepository.findById(assignmentId);
         if(!assignment.isPresent())
             throw new AssignmentNotFoundException("assignment not found with id:"+assignmentId.toString());
-        Paper paper = paperRepository.findByStudentAndAssignment(student.get(),assignment.get())
-                .stream()
-                .sorted(Comparator.comparing(Paper::getPublished,Timestamp::compareTo))
-                .reduce((a1,a2)-> a2).orElse(null);
+        Paper paper = latestPaperRepository.findPaper(studentId, assignmentId).orElse(null);
 
         if(paper ==null)
             throw  new PaperNotFoundException(studentId);
 
-        byte[] image = paper.getImage();
         if(paper.getStatus()== PaperStatus.NULL ||
                 (paper.getStatus()== PaperStatus.REVISED && paper.isFlag())) {
-           addPaperByte(Utils.getNow(), PaperStatus.READ,true,null,image,studentId,assignmentId);
+            savePaper(Utils.getNow(), PaperStatus.READ, true, null, paper.getImage(), student.get(), assignment.get());
             return  true;
         }
 
@@ -218,10 +256,7 @@ public class AssignmentServiceImpl implements AssignmentService {
         Optional<Assignment> assignment = assignmentRepository.findById(assignmentId);
         if(!assignment.isPresent())
             throw new AssignmentNotFoundException("assignment not found with id:"+assignmentId.toString());
-        Paper paper = paperRepository.findByStudentAndAssignment(student.get(),assignment.get())
-                .stream()
-                .sorted(Comparator.comparing(Paper::getPublished,Timestamp::compareTo))
-                .reduce((a1,a2)-> a2).orElse(null);
+        Paper paper = latestPaperRepository.findPaper(studentId, assignmentId).orElse(null);
         if(paper ==null)
             throw  new PaperNotFoundException(studentId);
         return assignment.get().getExpired().after(Utils.getNow()) && paper.isFlag() && paper.getStatus() == PaperStatus.READ;
@@ -240,7 +275,7 @@ public class AssignmentServiceImpl implements AssignmentService {
 
     @Override
     @PreAuthorize("(hasRole('TEACHER') and @securityServiceImpl.canOpen(#assignmentId)) or (hasRole('STUDENT') and @securityServiceImpl.canView(#assignmentId) and @securityServiceImpl.isDone(#assignmentId) and @securityServiceImpl.isAuthorized(#studentId))")
-    public PaperDTO addPaperByte(Timestamp published, PaperStatus state, boolean flag, String score, byte[] image, String studentId, Long assignmentId) {
+    public PaperDTO addPaper(Timestamp published, PaperStatus state, boolean flag, String score, InputStreamSource image, String studentId, Long assignmentId) throws IOException {
         Optional<Student> student = studentRepository.findById(studentId);
         if(!student.isPresent())
             throw  new StudentNotFoundException(studentId);
@@ -251,17 +286,159 @@ public class AssignmentServiceImpl implements AssignmentService {
         if(!student.get().getCourses().contains(assignment.get().getCourse()))
             throw  new StudentNotEnrolledException(studentId);
 
+        Paper paper = savePaper(published, state, flag, score, image == null ? null : imageIngestService.ingest(image), student.get(), assignment.get());
+        if (paper.getImage() != null) {
+            previewService.requestPreview(paper.getImage().getId());
+        }
+        return modelMapper.map(paper, PaperDTO.class);
+
+    }
+
+    @Override
+    @PreAuthorize("hasRole('TEACHER') and @securityServiceImpl.canOpen(#assignmentId)")
+    public List<PaperReviewResult> reviewPapers(Long assignmentId, List<PaperReviewRequest> reviews, Map<String, MultipartFile> images) {
+        Assignment assignment = assignmentRepository.findById(assignmentId)
+                .orElseThrow(() -> new AssignmentNotFoundException(assignmentId.toString()));
+        Timestamp now = Utils.getNow();
+        boolean expired = assignment.getExpired().before(now);
+        // one locked read for every student instead of a history scan each
+        Map<String, LatestPaper> latestPapers = latestPaperRepository.findForUpdateByAssignmentAndStudentIn(assignmentId,
+                reviews.stream().map(PaperReviewRequest::getStudentId).collect(Collectors.toSet()))
+                .stream()
+                .collect(Collectors.toMap(l -> l.getId().getStudentId(), l -> l));
+
+        List<PaperReviewResult> results = new ArrayList<>();
+        Map<String, Image> ingested = new HashMap<>();
+        // the parts that are not valid images, so every entry naming them fails the same way
+        Map<String, ResponseStatusException> rejected = new HashMap<>();
+        List<Paper> revised = new ArrayList<>();
+        Set<String> reviewed = new HashSet<>();
+        for (PaperReviewRequest review : reviews) {
+            String studentId = review.getStudentId();
+            // recorded before any check, a repeated student is a conflict even when its first entry failed
+            if (!reviewed.add(studentId)) {
+                results.add(new PaperReviewResult(studentId, 409, "The student "+studentId+" is reviewed more than once", null));
+                continue;
+            }
+            LatestPaper latest = latestPapers.get(studentId);
+            if (latest == null) {
+                results.add(new PaperReviewResult(studentId, 404, "There are not any assignment for student: "+studentId, null));
+                continue;
+            }
+            if (review.getImage() != null && !images.containsKey(review.getImage())) {
+                results.add(new PaperReviewResult(studentId, 400, "There is not any image named: "+review.getImage(), null));
+                continue;
+            }
+            try {
+                checkReview(expired, review.isFlag(), review.getScore(), latest.getPaper());
+            } catch (AssignmentServiceException e) {
+                results.add(new PaperReviewResult(studentId, e instanceof PaperNotFoundException ? 404 : 400, e.getMessage(), null));
+                continue;
+            }
+
+            Image image = latest.getPaper().getImage();
+            if (review.getImage() != null) {
+                image = ingested.get(review.getImage());
+                if (image == null && !rejected.containsKey(review.getImage())) {
+                    MultipartFile file = images.get(review.getImage());
+                    try {
+                        mediaInspectionService.checkImage(file);
+                        image = imageIngestService.ingest(file);
+                        ingested.put(review.getImage(), image);
+                    } catch (ResponseStatusException e) {
+                        rejected.put(review.getImage(), e);
+                    } catch (IOException e) {
+                        rejected.put(review.getImage(), new ResponseStatusException(HttpStatus.UNSUPPORTED_MEDIA_TYPE, "invalid file content"));
+                    }
+                }
+                if (image == null) {
+                    ResponseStatusException e = rejected.get(review.getImage());
+                    results.add(new PaperReviewResult(studentId, e.getStatus().value(), e.getReason(), null));
+                    continue;
+                }
+            }
+            Paper paper = Paper.detached(now, PaperStatus.REVISED, review.isFlag(), image, latest.getPaper().getStudent(), assignment);
+            paper.setScore(review.getScore());
+            entityManager.persist(paper);
+            latest.setPaper(paper);
+            revised.add(paper);
+            results.add(new PaperReviewResult(studentId, 201, null, paper.getId()));
+        }
+
+        revised.stream()
+                .filter(p -> p.getImage() != null)
+                .collect(Collectors.groupingBy(p -> p.getImage().getId(), Collectors.counting()))
+                .forEach((imageId, count) -> imageService.retain(imageId, count.intValue()));
+        ingested.values().forEach(image -> previewService.requestPreview(image.getId()));
+        if (!revised.isEmpty()) {
+            assignmentStatsCache.evict(assignmentId);
+        }
+        return results;
+    }
+
+    /**
+     * the same rules of a single review sent to the controller
+     */
+    private static void checkReview(boolean expired, boolean flag, String score, Paper latest) {
+        boolean noScore = score == null || score.toLowerCase().equals("null");
+        if (expired && (flag || noScore))
+            throw new InvalidScore("The flag must be false and the score must not be null");
+        if (!flag && noScore)
+            throw new InvalidScore("The score must not be null");
+        if (flag && !noScore)
+            throw new InvalidScore("The flag must be false if you want to assign a score");
+        if (latest.getStatus() != PaperStatus.DELIVERED)
+            throw new PaperNotFoundException("The student "+latest.getStudent().getId()+" not update an paper to be reviewed");
+    }
+
+    private Paper savePaper(Timestamp published, PaperStatus state, boolean flag, String score, Image image, Student student, Assignment assignment) {
         Paper paper = new Paper();
         paper.setScore(score);
         paper.setFlag(flag);
         paper.setStatus(state);
-        paper.setAssignment(assignment.get());
+        paper.setAssignment(assignment);
         paper.setPublished(published);
-        paper.setStudent(student.get());
+        paper.setStudent(student);
         paper.setImage(image);
+        imageService.retain(image);
         paperRepository.save(paper);
-        return modelMapper.map(paper, PaperDTO.class);
+        latestPaperRepository.moveTo(paper);
+        assignmentStatsCache.evict(assignment.getId());
+        return paper;
+    }
+
+    private static PaperDTO toDTO(PaperSummary paper) {
+        return PaperDTO.builder()
+                .id(paper.getId())
+                .published(paper.getPublished())
+                .status(paper.getStatus())
+                .flag(paper.isFlag())
+                .score(paper.getScore())
+                .imageId(paper.getImageId())
+                .studentId(paper.getStudentId())
+                .build();
+    }
+
+    /**
+     * flags the papers whose preview is ready, with a single query for the whole list
+     */
+    private List<PaperDTO> withPreviews(List<PaperDTO> papers) {
+        Set<String> previewed = imageService.getPreviewed(papers.stream()
+                .map(PaperDTO::getImageId)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toSet()));
+        papers.forEach(p -> p.setPreview(previewed.contains(p.getImageId())));
+        return papers;
+    }
+
+    private PaperDTO withPreview(PaperDTO paper) {
+        return withPreviews(Collections.singletonList(paper)).get(0);
+    }
 
+    private AssignmentDTO withPreview(AssignmentDTO assignment) {
+        assignment.setPreview(assignment.getImageId() != null
+                && !imageService.getPreviewed(Collections.singleton(assignment.getImageId())).isEmpty());
+        return assignment;
     }
 
 
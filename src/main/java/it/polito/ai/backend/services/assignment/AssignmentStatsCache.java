@@ -0,0 +1,111 @@
+package it.polito.ai.backend.services.assignment;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import it.polito.ai.backend.dtos.AssignmentStatsDTO;
+import it.polito.ai.backend.dtos.PaperStatus;
+import it.polito.ai.backend.repositories.LatestPaperRepository;
+import it.polito.ai.backend.repositories.PaperStatusCount;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.annotation.PostConstruct;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * paper counters of the assignments, computed by one aggregate query over the latest papers and
+ * kept until a paper of the assignment changes; the expiration only bounds the writes missed
+ */
+@Component
+public class AssignmentStatsCache {
+
+    @Autowired
+    LatestPaperRepository latestPaperRepository;
+    @Autowired
+    MeterRegistry meterRegistry;
+
+    @Value("${assignment.stats.cache.max-size:1000}")
+    long maxSize;
+    @Value("${assignment.stats.cache.expiration:10m}")
+    Duration expiration;
+
+    private Cache<Long, AssignmentStatsDTO> cache;
+
+    @PostConstruct
+    void init() {
+        cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(expiration)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "assignment-stats");
+    }
+
+    /**
+     * a copy, the caller may add links to it
+     */
+    public AssignmentStatsDTO get(Long assignmentId) {
+        return cache.get(assignmentId, this::load).toBuilder().build();
+    }
+
+    public void evict(Long assignmentId) {
+        evict(Collections.singleton(assignmentId));
+    }
+
+    /**
+     * once the transaction has committed, a reader in between could cache the old counters again
+     */
+    public void evict(Collection<Long> assignmentIds) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+                @Override
+                public void afterCommit() {
+                    cache.invalidateAll(assignmentIds);
+                }
+            });
+        } else {
+            cache.invalidateAll(assignmentIds);
+        }
+    }
+
+    public void evictAll() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+                @Override
+                public void afterCommit() {
+                    cache.invalidateAll();
+                }
+            });
+        } else {
+            cache.invalidateAll();
+        }
+    }
+
+    private AssignmentStatsDTO load(Long assignmentId) {
+        Map<PaperStatus, Long> statuses = new EnumMap<>(PaperStatus.class);
+        for (PaperStatus status : PaperStatus.values()) {
+            statuses.put(status, 0L);
+        }
+        long papers = 0;
+        long flagged = 0;
+        for (PaperStatusCount count : latestPaperRepository.countByStatus(assignmentId)) {
+            statuses.put(count.getStatus(), count.getPapers());
+            papers += count.getPapers();
+            flagged += count.getFlagged();
+        }
+        return AssignmentStatsDTO.builder()
+                .papers(papers)
+                .statuses(Collections.unmodifiableMap(statuses))
+                .flagged(flagged)
+                .build();
+    }
+}
@@ -0,0 +1,134 @@
+package it.polito.ai.backend.services.assignment;
+
+import it.polito.ai.backend.dtos.PaperStatus;
+import it.polito.ai.backend.entities.DeadlineType;
+import it.polito.ai.backend.entities.LatestPaper;
+import it.polito.ai.backend.entities.Paper;
+import it.polito.ai.backend.entities.Watermark;
+import it.polito.ai.backend.repositories.AssignmentExpiry;
+import it.polito.ai.backend.repositories.AssignmentRepository;
+import it.polito.ai.backend.repositories.LatestPaperRepository;
+import it.polito.ai.backend.repositories.WatermarkRepository;
+import it.polito.ai.backend.services.Utils;
+import it.polito.ai.backend.services.deadline.DeadlineHandler;
+import it.polito.ai.backend.services.image.ImageService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.EntityManager;
+import java.sql.Timestamp;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+
+/**
+ * delivers the current paper of every student of the assignments expired since the last run.
+ * The assignments are taken in (expired, id) order, a chunk at a time; each chunk is committed
+ * together with the watermark, so an interrupted sweep resumes after the last committed chunk.
+ * It runs when the deadline of an assignment fires, the assignments expired together are swept at once;
+ * the deadlines firing while a sweep runs only ask for one more pass, so they do not contend for the
+ * watermark and the latest paper locks
+ */
+@Component
+public class ExpiredAssignmentSweeper implements DeadlineHandler {
+
+    private static final String WATERMARK = "expired-assignments";
+
+    @Autowired
+    AssignmentRepository assignmentRepository;
+    @Autowired
+    LatestPaperRepository latestPaperRepository;
+    @Autowired
+    WatermarkRepository watermarkRepository;
+    @Autowired
+    ImageService imageService;
+    @Autowired
+    EntityManager entityManager;
+    @Autowired
+    TransactionTemplate transactionTemplate;
+    @Autowired
+    AssignmentStatsCache assignmentStatsCache;
+
+    @Value("${assignment.expiry.chunk-size:20}")
+    int chunkSize;
+
+    private final AtomicBoolean sweeping = new AtomicBoolean();
+    private final AtomicBoolean requested = new AtomicBoolean();
+
+    @Override
+    public DeadlineType getType() {
+        return DeadlineType.ASSIGNMENT_EXPIRY;
+    }
+
+    @Override
+    public void expire(String target) {
+        // the target is not used: the sweep delivers every assignment expired by now, from the watermark
+        requested.set(true);
+        while (requested.get() && sweeping.compareAndSet(false, true)) {
+            try {
+                requested.set(false);
+                int delivered = sweep();
+                if (delivered > 0) {
+                    System.out.println("Expired assignments swept, delivered "+delivered+" papers");
+                }
+            } finally {
+                sweeping.set(false);
+            }
+        }
+    }
+
+    /**
+     * @return the number of papers delivered
+     */
+    public int sweep() {
+        Timestamp now = Utils.getNow();
+        int delivered = 0;
+        Integer chunk;
+        while ((chunk = transactionTemplate.execute(status -> sweepChunk(now))) != null) {
+            delivered += chunk;
+        }
+        return delivered;
+    }
+
+    /**
+     * @return the papers delivered, null when no assignment is left
+     */
+    private Integer sweepChunk(Timestamp now) {
+        Watermark watermark = watermarkRepository.findById(WATERMARK)
+                .orElseGet(() -> new Watermark(WATERMARK, new Timestamp(0), 0L));
+        List<AssignmentExpiry> assignments = assignmentRepository.findExpiredAfter(watermark.getTimestamp(), watermark.getLastId(), now, PageRequest.of(0, chunkSize));
+        if (assignments.isEmpty()) {
+            return null;
+        }
+
+        Timestamp published = Utils.getNow();
+        List<LatestPaper> latestPapers = latestPaperRepository.findForUpdateByAssignmentIn(
+                assignments.stream().map(AssignmentExpiry::getId).collect(Collectors.toList()));
+        List<LatestPaper> toDeliver = latestPapers.stream()
+                /** If status!= Delivered and flag==true => status= delivered and flag=false*/
+                .filter(l -> l.getPaper().getStatus() != PaperStatus.DELIVERED && l.getPaper().isFlag())
+                .collect(Collectors.toList());
+        for (LatestPaper latest : toDeliver) {
+            Paper last = latest.getPaper();
+            Paper paper = Paper.detached(published, PaperStatus.DELIVERED, false, last.getImage(), last.getStudent(), last.getAssignment());
+            entityManager.persist(paper);
+            latest.setPaper(paper);
+        }
+        // by id, hashing the image proxies would read their content
+        Map<String, Long> references = toDeliver.stream()
+                .filter(l -> l.getPaper().getImage() != null)
+                .collect(Collectors.groupingBy(l -> l.getPaper().getImage().getId(), Collectors.counting()));
+        references.forEach((imageId, count) -> imageService.retain(imageId, count.intValue()));
+        assignmentStatsCache.evict(toDeliver.stream().map(l -> l.getId().getAssignmentId()).collect(Collectors.toSet()));
+
+        AssignmentExpiry last = assignments.get(assignments.size() - 1);
+        watermark.setTimestamp(last.getExpired());
+        watermark.setLastId(last.getId());
+        watermarkRepository.save(watermark);
+        return toDeliver.size();
+    }
+}
@@ -0,0 +1,30 @@
+package it.polito.ai.backend.services.assignment;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.CommandLineRunner;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+/**
+ * fills the latest paper pointers of the papers submitted before they were maintained
+ */
+@Component
+public class LatestPaperMigration implements CommandLineRunner {
+
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+
+    @Override
+    public void run(String... args) {
+        // the newest paper of each pair without a pointer, ties broken by id as the papers are saved in order
+        int added = jdbcTemplate.update("insert into latest_paper (student_id, assignment_id, paper_id) " +
+                "select p.student, p.assignment_id, max(p.id) from paper p " +
+                "where p.student is not null and p.assignment_id is not null " +
+                "and not exists (select 1 from latest_paper l where l.student_id=p.student and l.assignment_id=p.assignment_id) " +
+                "and p.published=(select max(q.published) from paper q where q.student=p.student and q.assignment_id=p.assignment_id) " +
+                "group by p.student, p.assignment_id");
+        if (added > 0) {
+            System.out.println("Added " + added + " latest paper pointers");
+        }
+    }
+}
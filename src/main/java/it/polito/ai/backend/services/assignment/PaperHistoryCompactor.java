@@ -0,0 +1,93 @@
+package it.polito.ai.backend.services.assignment;
+
+import it.polito.ai.backend.entities.Image;
+import it.polito.ai.backend.entities.Watermark;
+import it.polito.ai.backend.repositories.PaperRepository;
+import it.polito.ai.backend.repositories.PaperSummary;
+import it.polito.ai.backend.repositories.WatermarkRepository;
+import it.polito.ai.backend.services.Utils;
+import it.polito.ai.backend.services.image.ImageService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.EntityManager;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * removes from the paper histories the status changes older than the retention; the papers bringing
+ * a new image or a score and the current paper of every student are kept, so the history still shows
+ * every submitted content. The papers are walked by id from a watermark, a chunk per transaction; the
+ * watermark never passes a paper skipped only because it was the latest, which is compacted by a later
+ * run after its student submits a newer paper
+ */
+@Component
+public class PaperHistoryCompactor {
+
+    private static final String WATERMARK = "paper-history";
+
+    @Autowired
+    PaperRepository paperRepository;
+    @Autowired
+    WatermarkRepository watermarkRepository;
+    @Autowired
+    ImageService imageService;
+    @Autowired
+    EntityManager entityManager;
+    @Autowired
+    TransactionTemplate transactionTemplate;
+
+    @Value("${paper.history.retention:180d}")
+    Duration retention;
+    @Value("${paper.history.chunk-size:500}")
+    int chunkSize;
+
+    /**
+     * @return the number of papers removed
+     */
+    public int compact() {
+        Timestamp cutoff = new Timestamp(Utils.getNow().getTime() - retention.toMillis());
+        int removed = 0;
+        Integer chunk;
+        while ((chunk = transactionTemplate.execute(status -> compactChunk(cutoff))) != null) {
+            removed += chunk;
+        }
+        return removed;
+    }
+
+    /**
+     * @return the papers removed, null when no paper is left
+     */
+    private Integer compactChunk(Timestamp cutoff) {
+        Watermark watermark = watermarkRepository.findById(WATERMARK)
+                .orElseGet(() -> new Watermark(WATERMARK, new Timestamp(0), 0L));
+        List<PaperSummary> papers = paperRepository.findCompactable(watermark.getLastId(), cutoff, PageRequest.of(0, chunkSize));
+        if (papers.isEmpty()) {
+            return null;
+        }
+
+        paperRepository.deleteByIdIn(papers.stream().map(PaperSummary::getId).collect(Collectors.toList()));
+        // every removed paper held a reference to its image, which stays referenced by an earlier paper
+        Map<String, Long> references = papers.stream()
+                .collect(Collectors.groupingBy(PaperSummary::getImageId, Collectors.counting()));
+        references.forEach((imageId, count) -> imageService.release(entityManager.getReference(Image.class, imageId), count.intValue()));
+
+        PaperSummary last = papers.get(papers.size() - 1);
+        Long held = paperRepository.findFirstLatestCompactable(watermark.getLastId(), last.getId(), cutoff);
+        if (held == null) {
+            watermark.setTimestamp(last.getPublished());
+            watermark.setLastId(last.getId());
+        } else {
+            // the watermark stays before the papers skipped as latest, so they are scanned again once superseded
+            watermark.setLastId(held - 1);
+        }
+        watermarkRepository.save(watermark);
+        return papers.size();
+    }
+}
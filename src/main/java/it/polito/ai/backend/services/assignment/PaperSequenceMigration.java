@@ -0,0 +1,28 @@
+package it.polito.ai.backend.services.assignment;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.CommandLineRunner;
+import org.springframework.core.annotation.Order;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+/**
+ * moves the paper sequence past the papers numbered by the shared hibernate sequence,
+ * before any paper is inserted with it
+ */
+@Component
+@Order(0)
+public class PaperSequenceMigration implements CommandLineRunner {
+
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+
+    @Override
+    public void run(String... args) {
+        Long max = jdbcTemplate.queryForObject("select coalesce(max(id), 0) from paper", Long.class);
+        int moved = jdbcTemplate.update("update paper_sequence set next_val=? where next_val<=?", max + 1, max);
+        if (moved > 0) {
+            System.out.println("Paper sequence moved to " + (max + 1));
+        }
+    }
+}
@@ -0,0 +1,13 @@
+package it.polito.ai.backend.services.deadline;
+
+import it.polito.ai.backend.entities.DeadlineType;
+
+/**
+ * reacts to the deadlines of one type; a deadline may be handled more than once, e.g. when the
+ * application stops before removing it, so handling an already expired target must do nothing
+ */
+public interface DeadlineHandler {
+    DeadlineType getType();
+
+    void expire(String target);
+}
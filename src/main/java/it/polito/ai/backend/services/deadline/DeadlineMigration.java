@@ -0,0 +1,61 @@
+package it.polito.ai.backend.services.deadline;
+
+import it.polito.ai.backend.entities.DeadlineId;
+import it.polito.ai.backend.entities.DeadlineType;
+import it.polito.ai.backend.entities.Token;
+import it.polito.ai.backend.repositories.AssignmentExpiry;
+import it.polito.ai.backend.repositories.AssignmentRepository;
+import it.polito.ai.backend.repositories.DeadlineRepository;
+import it.polito.ai.backend.repositories.TokenRepository;
+import it.polito.ai.backend.services.Utils;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.CommandLineRunner;
+import org.springframework.stereotype.Component;
+
+import java.sql.Timestamp;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.function.BinaryOperator;
+import java.util.stream.Collectors;
+
+/**
+ * adds the deadlines of the assignments and team proposals created before they were stored
+ */
+@Component
+public class DeadlineMigration implements CommandLineRunner {
+
+    @Autowired
+    AssignmentRepository assignmentRepository;
+    @Autowired
+    TokenRepository tokenRepository;
+    @Autowired
+    DeadlineRepository deadlineRepository;
+    @Autowired
+    DeadlineService deadlineService;
+
+    @Override
+    public void run(String... args) {
+        Timestamp now = Utils.getNow();
+        int added = 0;
+        for (AssignmentExpiry assignment : assignmentRepository.findAllByExpiredAfter(now)) {
+            added += add(DeadlineType.ASSIGNMENT_EXPIRY, assignment.getId().toString(), assignment.getExpired());
+        }
+        // the tokens of a proposal share the expiry date, the earliest is taken anyway
+        Map<Long, Timestamp> proposals = tokenRepository.findAllByExpiryDateAfter(now).stream()
+                .collect(Collectors.toMap(Token::getTeamId, Token::getExpiryDate, BinaryOperator.minBy(Comparator.naturalOrder())));
+        for (Map.Entry<Long, Timestamp> proposal : proposals.entrySet()) {
+            added += add(DeadlineType.TEAM_PROPOSAL_EXPIRY, proposal.getKey().toString(), proposal.getValue());
+        }
+        if (added > 0) {
+            System.out.println("Added " + added + " deadlines");
+        }
+    }
+
+    private int add(DeadlineType type, String target, Timestamp due) {
+        if (deadlineRepository.existsById(new DeadlineId(type, target))) {
+            return 0;
+        }
+        deadlineService.schedule(type, target, due);
+        return 1;
+    }
+}
@@ -0,0 +1,24 @@
+package it.polito.ai.backend.services.deadline;
+
+import it.polito.ai.backend.entities.DeadlineType;
+
+import java.sql.Timestamp;
+
+public interface DeadlineService {
+    /**
+     * stores the deadline, or moves it if the target already has one, and starts its timer once committed
+     */
+    void schedule(DeadlineType type, String target, Timestamp due);
+
+    /**
+     * starts the timers of the stored deadlines that are due soon, the overdue ones fire immediately
+     * @return the number of timers started
+     */
+    int load();
+
+    /**
+     * schedules again the deadlines kept as failed after their last attempt, with their attempts starting over
+     * @return the number of deadlines replayed
+     */
+    int replayFailed();
+}
@@ -0,0 +1,185 @@
+package it.polito.ai.backend.services.deadline;
+
+import it.polito.ai.backend.entities.Deadline;
+import it.polito.ai.backend.entities.DeadlineId;
+import it.polito.ai.backend.entities.DeadlineType;
+import it.polito.ai.backend.repositories.DeadlineRepository;
+import it.polito.ai.backend.services.Utils;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledFuture;
+
+@Service
+public class DeadlineServiceImpl implements DeadlineService {
+
+    @Autowired
+    DeadlineRepository deadlineRepository;
+    @Autowired
+    TransactionTemplate transactionTemplate;
+    /**
+     * looked up when a deadline fires, the handlers use the services that schedule the deadlines
+     */
+    @Autowired
+    ObjectProvider<DeadlineHandler> handlers;
+
+    @Value("${deadline.horizon:15m}")
+    Duration horizon;
+    @Value("${deadline.threads:2}")
+    int threads;
+    @Value("${deadline.batch-size:1000}")
+    int batchSize;
+    @Value("${deadline.retry-delay:1m}")
+    Duration retryDelay;
+    @Value("${deadline.max-attempts:10}")
+    int maxAttempts;
+
+    /**
+     * kept private instead of being a bean, so the @Scheduled tasks are not affected
+     */
+    private ThreadPoolTaskScheduler scheduler;
+    /**
+     * only the deadlines due within the horizon have a timer, the others wait in the database for a later load
+     */
+    private final Map<DeadlineId, ScheduledFuture<?>> timers = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    void init() {
+        scheduler = new ThreadPoolTaskScheduler();
+        scheduler.setPoolSize(threads);
+        scheduler.setRemoveOnCancelPolicy(true);
+        scheduler.setThreadNamePrefix("deadline-");
+        scheduler.initialize();
+    }
+
+    @PreDestroy
+    void destroy() {
+        scheduler.shutdown();
+    }
+
+    @Override
+    public void schedule(DeadlineType type, String target, Timestamp due) {
+        // a moved deadline starts over with its attempts
+        Deadline deadline = deadlineRepository.save(Deadline.builder().id(new DeadlineId(type, target)).due(due).build());
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            // the timer must not fire for a target that is rolled back
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+                @Override
+                public void afterCommit() {
+                    rearm(deadline);
+                }
+            });
+        } else {
+            rearm(deadline);
+        }
+    }
+
+    @Override
+    public int load() {
+        Timestamp until = new Timestamp(Utils.getNow().getTime() + horizon.toMillis());
+        int started = 0;
+        for (Deadline deadline : deadlineRepository.findAllByFailedFalseAndDueBeforeOrderByDue(until, PageRequest.of(0, batchSize))) {
+            if (!timers.containsKey(deadline.getId())) {
+                timers.computeIfAbsent(deadline.getId(), id -> start(deadline));
+                started++;
+            }
+        }
+        return started;
+    }
+
+    @Override
+    public int replayFailed() {
+        int replayed = 0;
+        for (Deadline deadline : deadlineRepository.findAllByFailedTrue()) {
+            // scheduled again at its own due time, which has passed, so it fires right away
+            schedule(deadline.getId().getType(), deadline.getId().getTarget(), deadline.getDue());
+            replayed++;
+        }
+        return replayed;
+    }
+
+    /**
+     * replaces the timer of a deadline that may have been moved
+     */
+    private void rearm(Deadline deadline) {
+        boolean soon = deadline.getDue().getTime() < Utils.getNow().getTime() + horizon.toMillis();
+        timers.compute(deadline.getId(), (id, timer) -> {
+            if (timer != null) {
+                timer.cancel(false);
+            }
+            return soon ? start(deadline) : null;
+        });
+    }
+
+    private ScheduledFuture<?> start(Deadline deadline) {
+        return scheduler.schedule(() -> fire(deadline.getId()), deadline.getDue());
+    }
+
+    private void fire(DeadlineId id) {
+        timers.remove(id);
+        Optional<Deadline> deadline;
+        try {
+            deadline = deadlineRepository.findById(id);
+        } catch (RuntimeException e) {
+            // the deadline is kept, the next load starts it again
+            return;
+        }
+        if (!deadline.isPresent()) {
+            // already handled by another instance
+            return;
+        }
+        Timestamp due = deadline.get().getDue();
+        if (due.after(Utils.getNow())) {
+            // moved after the timer had started
+            rearm(deadline.get());
+            return;
+        }
+        try {
+            DeadlineHandler handler = handlers.stream()
+                    .filter(h -> h.getType() == id.getType())
+                    .findFirst()
+                    .orElseThrow(() -> new IllegalStateException("No handler for " + id.getType()));
+            handler.expire(id.getTarget());
+            transactionTemplate.execute(status -> deadlineRepository.deleteIfDue(id.getType(), id.getTarget(), due));
+        } catch (RuntimeException e) {
+            retry(deadline.get());
+        }
+    }
+
+    /**
+     * postpones a failed deadline, doubling the delay at every attempt; after the last one the deadline is kept
+     * as failed, so a handler that always fails is not run again at every load, and it can be replayed with replayFailed
+     */
+    private void retry(Deadline deadline) {
+        DeadlineId id = deadline.getId();
+        int attempts = deadline.getAttempts() + 1;
+        try {
+            if (attempts >= maxAttempts) {
+                transactionTemplate.execute(status -> deadlineRepository.failIfDue(id.getType(), id.getTarget(), deadline.getDue(), attempts));
+                return;
+            }
+            Timestamp next = new Timestamp(Utils.getNow().getTime() + (retryDelay.toMillis() << Math.min(attempts - 1, 20)));
+            Integer postponed = transactionTemplate.execute(status ->
+                    deadlineRepository.postponeIfDue(id.getType(), id.getTarget(), deadline.getDue(), next, attempts));
+            if (postponed != null && postponed > 0) {
+                rearm(Deadline.builder().id(id).due(next).attempts(attempts).build());
+            }
+        } catch (RuntimeException e) {
+            // the deadline is kept as it was, the next load starts it again
+        }
+    }
+}
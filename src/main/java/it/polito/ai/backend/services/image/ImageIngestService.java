@@ -0,0 +1,16 @@
+package it.polito.ai.backend.services.image;
+
+import it.polito.ai.backend.entities.Image;
+import org.springframework.core.io.InputStreamSource;
+
+import java.io.IOException;
+
+public interface ImageIngestService {
+
+    /**
+     * normalizes an uploaded image (resolution capped, orientation applied, metadata stripped,
+     * re-encoded as jpeg) and stores the result; the original upload is archived first if cold storage is enabled.
+     * As for ImageService.store, the reference count is left untouched
+     */
+    Image ingest(InputStreamSource upload) throws IOException;
+}
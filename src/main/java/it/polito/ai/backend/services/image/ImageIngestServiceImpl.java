@@ -0,0 +1,260 @@
+package it.polito.ai.backend.services.image;
+
+import it.polito.ai.backend.entities.Image;
+import it.polito.ai.backend.repositories.ImageRepository;
+import it.polito.ai.backend.services.Utils;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.core.io.InputStreamSource;
+import org.springframework.stereotype.Service;
+import org.w3c.dom.Node;
+
+import javax.annotation.PostConstruct;
+import javax.imageio.*;
+import javax.imageio.metadata.IIOMetadata;
+import javax.imageio.metadata.IIOMetadataNode;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+import javax.transaction.Transactional;
+import java.awt.*;
+import java.awt.geom.AffineTransform;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.util.Iterator;
+import java.util.concurrent.Semaphore;
+
+@Service
+@Transactional
+public class ImageIngestServiceImpl implements ImageIngestService {
+
+    private static final int EXIF_ORIENTATION = 0x0112;
+
+    @Autowired
+    ImageService imageService;
+    @Autowired
+    ImageRepository imageRepository;
+
+    @Value("${image.ingest.max-dimension:2048}")
+    int maxDimension;
+    @Value("${image.ingest.quality:0.8}")
+    float quality;
+    /**
+     * decoding needs width * height * 3 bytes, the number of uploads decoded at the same time is bounded
+     */
+    @Value("${image.ingest.max-concurrent:4}")
+    int maxConcurrent;
+    /**
+     * where the original uploads are kept, named by their sha-256; empty to discard them
+     */
+    @Value("${image.ingest.original-dir:}")
+    String originalDir;
+
+    private Semaphore decoding;
+
+    @PostConstruct
+    void init() throws IOException {
+        decoding = new Semaphore(maxConcurrent);
+        if (!originalDir.isEmpty()) {
+            Files.createDirectories(Paths.get(originalDir));
+        }
+    }
+
+    @Override
+    public Image ingest(InputStreamSource upload) throws IOException {
+        String originalId = originalDir.isEmpty() ? null : archive(upload);
+        byte[] normalized;
+        try {
+            decoding.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException();
+        }
+        try {
+            normalized = normalize(upload);
+        } finally {
+            decoding.release();
+        }
+        Image image = imageService.store(new ByteArrayResource(normalized));
+        if (originalId != null) {
+            imageRepository.setOriginalIfMissing(image.getId(), originalId);
+        }
+        return image;
+    }
+
+    /**
+     * copies the upload to the cold storage directory, content addressed as the image store
+     */
+    private String archive(InputStreamSource upload) throws IOException {
+        Path dir = Paths.get(originalDir);
+        Path temp = Files.createTempFile(dir, "upload", ".tmp");
+        try {
+            MessageDigest digest = ImageServiceImpl.sha256();
+            try (InputStream in = new DigestInputStream(upload.getInputStream(), digest)) {
+                Files.copy(in, temp, StandardCopyOption.REPLACE_EXISTING);
+            }
+            String id = Utils.toHex(digest.digest());
+            Path target = dir.resolve(id);
+            if (!Files.exists(target)) {
+                Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE);
+            }
+            return id;
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    private byte[] normalize(InputStreamSource upload) throws IOException {
+        try (InputStream in = upload.getInputStream(); ImageInputStream stream = ImageIO.createImageInputStream(in)) {
+            Iterator<ImageReader> readers = stream == null ? null : ImageIO.getImageReaders(stream);
+            if (readers == null || !readers.hasNext()) {
+                throw new IIOException("unreadable image");
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(stream, true, false);
+                int width = reader.getWidth(0);
+                int height = reader.getHeight(0);
+                int orientation = orientation(reader.getImageMetadata(0));
+
+                // decoded subsampled close to the target, a 40M pixels photo is never held at full resolution
+                ImageReadParam param = reader.getDefaultReadParam();
+                int subsampling = Math.max(1, Math.max(width, height) / maxDimension);
+                param.setSourceSubsampling(subsampling, subsampling, 0, 0);
+                BufferedImage source = reader.read(0, param);
+
+                double ratio = Math.min(1, (double) maxDimension / Math.max(width, height));
+                int targetWidth = Math.max(1, (int) Math.round(width * ratio));
+                int targetHeight = Math.max(1, (int) Math.round(height * ratio));
+                return encode(draw(source, targetWidth, targetHeight, orientation));
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    /**
+     * scales on a white background (jpeg has no alpha) and applies the exif orientation,
+     * which would otherwise be lost with the metadata
+     */
+    private BufferedImage draw(BufferedImage source, int width, int height, int orientation) {
+        boolean swap = orientation >= 5 && orientation <= 8;
+        int outWidth = swap ? height : width;
+        int outHeight = swap ? width : height;
+        // maps the scaled stored image to the displayed one, (m00, m10, m01, m11, m02, m12)
+        AffineTransform transform;
+        switch (orientation) {
+            case 2: transform = new AffineTransform(-1, 0, 0, 1, width, 0); break;
+            case 3: transform = new AffineTransform(-1, 0, 0, -1, width, height); break;
+            case 4: transform = new AffineTransform(1, 0, 0, -1, 0, height); break;
+            case 5: transform = new AffineTransform(0, 1, 1, 0, 0, 0); break;
+            case 6: transform = new AffineTransform(0, 1, -1, 0, height, 0); break;
+            case 7: transform = new AffineTransform(0, -1, -1, 0, height, width); break;
+            case 8: transform = new AffineTransform(0, -1, 1, 0, 0, width); break;
+            default: transform = new AffineTransform(); break;
+        }
+        BufferedImage target = new BufferedImage(outWidth, outHeight, BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = target.createGraphics();
+        try {
+            graphics.setColor(Color.WHITE);
+            graphics.fillRect(0, 0, outWidth, outHeight);
+            graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            graphics.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            graphics.transform(transform);
+            graphics.drawImage(source, 0, 0, width, height, null);
+        } finally {
+            graphics.dispose();
+        }
+        return target;
+    }
+
+    /**
+     * written without metadata, only the jfif header is left
+     */
+    private byte[] encode(BufferedImage image) throws IOException {
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("jpeg").next();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (ImageOutputStream stream = ImageIO.createImageOutputStream(out)) {
+            writer.setOutput(stream);
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            param.setCompressionQuality(quality);
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * exif orientation of a jpeg (1 when missing), read from the raw APP1 segment
+     */
+    static int orientation(IIOMetadata metadata) {
+        if (metadata == null || !"javax_imageio_jpeg_image_1.0".equals(metadata.getNativeMetadataFormatName())) {
+            return 1;
+        }
+        Node markers = ((IIOMetadataNode) metadata.getAsTree("javax_imageio_jpeg_image_1.0")).getElementsByTagName("markerSequence").item(0);
+        if (markers == null) {
+            return 1;
+        }
+        for (Node node = markers.getFirstChild(); node != null; node = node.getNextSibling()) {
+            if (node instanceof IIOMetadataNode && "unknown".equals(node.getNodeName())
+                    && "225".equals(((IIOMetadataNode) node).getAttribute("MarkerTag"))) {
+                Object data = ((IIOMetadataNode) node).getUserObject();
+                if (data instanceof byte[]) {
+                    int orientation = exifOrientation((byte[]) data);
+                    if (orientation != 0) {
+                        return orientation;
+                    }
+                }
+            }
+        }
+        return 1;
+    }
+
+    private static int exifOrientation(byte[] app1) {
+        // "Exif\0\0" followed by a tiff header
+        if (app1.length < 14 || app1[0] != 'E' || app1[1] != 'x' || app1[2] != 'i' || app1[3] != 'f') {
+            return 0;
+        }
+        int tiff = 6;
+        boolean little = app1[tiff] == 'I';
+        int ifd = tiff + readInt(app1, tiff + 4, little);
+        if (ifd + 2 > app1.length) {
+            return 0;
+        }
+        int entries = readShort(app1, ifd, little);
+        for (int i = 0; i < entries; i++) {
+            int entry = ifd + 2 + i * 12;
+            if (entry + 12 > app1.length) {
+                return 0;
+            }
+            if (readShort(app1, entry, little) == EXIF_ORIENTATION) {
+                int value = readShort(app1, entry + 8, little);
+                return value >= 1 && value <= 8 ? value : 0;
+            }
+        }
+        return 0;
+    }
+
+    private static int readShort(byte[] data, int offset, boolean little) {
+        int b0 = data[offset] & 0xff;
+        int b1 = data[offset + 1] & 0xff;
+        return little ? (b1 << 8) | b0 : (b0 << 8) | b1;
+    }
+
+    private static int readInt(byte[] data, int offset, boolean little) {
+        int high = readShort(data, offset + (little ? 2 : 0), little);
+        int low = readShort(data, offset + (little ? 0 : 2), little);
+        return (high << 16) | low;
+    }
+}
@@ -0,0 +1,7 @@
+package it.polito.ai.backend.services.image;
+
+public class ImageNotFoundException extends ImageServiceException {
+    public ImageNotFoundException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,76 @@
+package it.polito.ai.backend.services.image;
+
+import org.springframework.core.io.AbstractResource;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.sql.Blob;
+import java.sql.SQLException;
+
+/**
+ * stored image served as a resource: the length is known without reading the content,
+ * which is read from the blob every time the resource (or a range of it) is written,
+ * or from memory for the cached ones. The mysql driver, without emulateLocators, loads the
+ * whole blob with the row: that is also why the blob can still be read after the transaction
+ * has ended, a locator based blob could not
+ */
+public class ImageResource extends AbstractResource {
+
+    private final String id;
+    private final long size;
+    private final String contentType;
+    private final Blob data;
+    private final byte[] content;
+
+    public ImageResource(String id, long size, String contentType, Blob data) {
+        this.id = id;
+        this.size = size;
+        this.contentType = contentType;
+        this.data = data;
+        this.content = null;
+    }
+
+    public ImageResource(String id, String contentType, byte[] content) {
+        this.id = id;
+        this.size = content.length;
+        this.contentType = contentType;
+        this.data = null;
+        this.content = content;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public String getContentType() {
+        return contentType;
+    }
+
+    @Override
+    public boolean exists() {
+        return true;
+    }
+
+    @Override
+    public long contentLength() {
+        return size;
+    }
+
+    @Override
+    public InputStream getInputStream() throws IOException {
+        if (content != null) {
+            return new ByteArrayInputStream(content);
+        }
+        try {
+            return data.getBinaryStream();
+        } catch (SQLException e) {
+            throw new IOException(e);
+        }
+    }
+
+    @Override
+    public String getDescription() {
+        return "image [" + id + "]";
+    }
+}
@@ -0,0 +1,80 @@
+package it.polito.ai.backend.services.image;
+
+import it.polito.ai.backend.entities.Image;
+import org.springframework.core.io.InputStreamSource;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Set;
+
+public interface ImageService {
+
+    /**
+     * returns the image holding the given bytes, creating it only if the same content is not already stored;
+     * the reference count is left untouched, callers linking the image to an entity must retain it.
+     * The content is streamed: first to compute its hash, then, only if new, straight into the database
+     */
+    Image store(InputStreamSource source) throws IOException;
+
+    /**
+     * @throws ImageNotFoundException if no content is stored with this id
+     */
+    ImageResource getResource(String imageId);
+
+    /**
+     * as getResource, but the content is kept in memory for the images downloaded by many users at once;
+     * concurrent misses on the same image read it from the database only once
+     */
+    ImageResource getCachedResource(String imageId);
+
+    /**
+     * @throws ImageNotFoundException if the preview of this image has not been built
+     */
+    ImageResource getPreviewResource(String imageId);
+
+    /**
+     * the subset of the given images whose preview is ready, without reading any content
+     */
+    Set<String> getPreviewed(Collection<String> imageIds);
+
+    /**
+     * writes the images as the entries of a zip, each named after its key with the extension of its type;
+     * one image at a time is read in memory, in its own transaction, and written after the transaction has ended,
+     * so the memory does not grow with the number of images and no connection waits for a slow client
+     */
+    void writeZip(Map<String, String> imageIds, OutputStream out) throws IOException;
+
+    void retain(Image image);
+
+    /**
+     * adds count references at once, for entities linked to the same image in bulk
+     */
+    void retain(Image image, int count);
+
+    /**
+     * the same by id, for callers grouping papers by their image: hashing an image proxy would load the content
+     */
+    void retain(String imageId, int count);
+
+    /**
+     * drops one reference and removes the content as soon as nothing points to it anymore
+     */
+    void release(Image image);
+
+    /**
+     * drops count references at once, for entities removed in bulk
+     */
+    void release(Image image, int count);
+
+    /**
+     * the same by id, for callers counting the papers of an image
+     */
+    void release(String imageId, int count);
+
+    /**
+     * removes every stored content no longer referenced by papers, assignments or avatars
+     */
+    int purge();
+}
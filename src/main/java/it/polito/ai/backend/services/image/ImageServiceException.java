@@ -0,0 +1,7 @@
+package it.polito.ai.backend.services.image;
+
+public class ImageServiceException extends RuntimeException {
+    public ImageServiceException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,284 @@
+package it.polito.ai.backend.services.image;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import it.polito.ai.backend.entities.Image;
+import it.polito.ai.backend.entities.ImagePreview;
+import it.polito.ai.backend.repositories.ImagePreviewRepository;
+import it.polito.ai.backend.repositories.ImageRepository;
+import it.polito.ai.backend.services.Utils;
+import it.polito.ai.backend.services.media.MediaInspectionService;
+import org.apache.tika.mime.MediaType;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.InputStreamSource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.StreamUtils;
+import org.springframework.util.unit.DataSize;
+
+import javax.annotation.PostConstruct;
+import javax.transaction.Transactional;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+@Service
+@Transactional
+public class ImageServiceImpl implements ImageService {
+
+    private static final int BUFFER_SIZE = 8 * 1024;
+
+    @Autowired
+    ImageRepository imageRepository;
+    @Autowired
+    ImagePreviewRepository imagePreviewRepository;
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+    @Autowired
+    MediaInspectionService mediaInspectionService;
+    @Autowired
+    MeterRegistry meterRegistry;
+    @Autowired
+    TransactionTemplate transactionTemplate;
+
+    /**
+     * total bytes of the cached images, the least recently used are evicted first
+     */
+    @Value("${image.cache.max-size:64MB}")
+    DataSize maxCacheSize;
+    @Value("${image.cache.max-image-size:4MB}")
+    DataSize maxCachedImage;
+
+    /**
+     * the content never changes for a given id, entries are only dropped when the image is deleted
+     */
+    private Cache<String, ImageResource> cache;
+    /**
+     * cached in place of the images too large to be kept, so their size is not read again on every request
+     */
+    private static final ImageResource TOO_LARGE = new ImageResource("", null, new byte[0]);
+
+    @PostConstruct
+    void init() {
+        cache = Caffeine.newBuilder()
+                .maximumWeight(maxCacheSize.toBytes())
+                // the marker weighs something, or it would never be evicted
+                .weigher((String id, ImageResource resource) -> resource == TOO_LARGE ? 1 : (int) resource.contentLength())
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "image");
+    }
+
+    @Override
+    public Image store(InputStreamSource source) throws IOException {
+        MessageDigest digest = sha256();
+        long size = 0;
+        byte[] buffer = new byte[BUFFER_SIZE];
+        byte[] prefix = new byte[Utils.SNIFF_LENGTH];
+        try (InputStream in = source.getInputStream()) {
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                digest.update(buffer, 0, read);
+                if (size < prefix.length) {
+                    System.arraycopy(buffer, 0, prefix, (int) size, (int) Math.min(read, prefix.length - size));
+                }
+                size += read;
+            }
+        }
+        String id = Utils.toHex(digest.digest());
+        if (!imageRepository.existsById(id)) {
+            String contentType = detect(Arrays.copyOf(prefix, (int) Math.min(size, prefix.length)));
+            long length = size;
+            // a concurrent upload of the same bytes may insert it first: the duplicate is skipped, instead of
+            // failing on the primary key and rolling back the whole submission
+            try (InputStream in = source.getInputStream()) {
+                jdbcTemplate.update("insert into image (id, size, content_type, ref_count, data) values (?, ?, ?, 0, ?) " +
+                        "on duplicate key update id=id", ps -> {
+                    ps.setString(1, id);
+                    ps.setLong(2, length);
+                    ps.setString(3, contentType);
+                    ps.setBinaryStream(4, in, length);
+                });
+            }
+        }
+        // reference only, the content does not need to be loaded
+        return imageRepository.getOne(id);
+    }
+
+    @Override
+    public ImageResource getResource(String imageId) {
+        Image image = imageRepository.findById(imageId).orElseThrow(() -> new ImageNotFoundException(imageId));
+        if (image.getContentType() == null) {
+            // stored before the type was recorded
+            try {
+                image.setContentType(detect(Utils.readPrefix(toResource(image))));
+            } catch (IOException e) {
+                image.setContentType(MediaType.OCTET_STREAM.toString());
+            }
+        }
+        return toResource(image);
+    }
+
+    @Override
+    public ImageResource getCachedResource(String imageId) {
+        ImageResource cached = cache.get(imageId, this::load);
+        return cached != TOO_LARGE ? cached : getResource(imageId);
+    }
+
+    @Override
+    public ImageResource getPreviewResource(String imageId) {
+        ImagePreview preview = imagePreviewRepository.findById(imageId).orElseThrow(() -> new ImageNotFoundException(imageId));
+        return new ImageResource(preview.getId(), preview.getSize(), preview.getContentType(), preview.getData());
+    }
+
+    @Override
+    public Set<String> getPreviewed(Collection<String> imageIds) {
+        if (imageIds.isEmpty()) {
+            return Collections.emptySet();
+        }
+        return new HashSet<>(imagePreviewRepository.findExistingIds(imageIds));
+    }
+
+    @Override
+    @Transactional(Transactional.TxType.NOT_SUPPORTED)
+    public void writeZip(Map<String, String> imageIds, OutputStream out) throws IOException {
+        ZipOutputStream zip = new ZipOutputStream(out);
+        // the images are already compressed
+        zip.setLevel(Deflater.NO_COMPRESSION);
+        for (Map.Entry<String, String> entry : imageIds.entrySet()) {
+            // read in the transaction, written once it has ended: no connection is held while the client reads
+            ImageResource resource;
+            try {
+                resource = transactionTemplate.execute(status -> read(entry.getValue()));
+            } catch (ImageNotFoundException e) {
+                // removed after the entries were listed
+                continue;
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+            zip.putNextEntry(new ZipEntry(entry.getKey() + "." + MediaType.parse(resource.getContentType()).getSubtype()));
+            try (InputStream in = resource.getInputStream()) {
+                StreamUtils.copy(in, zip);
+            }
+            zip.closeEntry();
+        }
+        zip.finish();
+    }
+
+    @Override
+    public void retain(Image image) {
+        if (image != null) {
+            imageRepository.retain(image.getId());
+        }
+    }
+
+    @Override
+    public void retain(Image image, int count) {
+        if (image != null) {
+            retain(image.getId(), count);
+        }
+    }
+
+    @Override
+    public void retain(String imageId, int count) {
+        if (imageId != null && count > 0) {
+            imageRepository.retain(imageId, count);
+        }
+    }
+
+    @Override
+    public void release(Image image) {
+        if (image != null) {
+            imageRepository.release(image.getId());
+            if (imageRepository.deleteIfUnreferenced(image.getId()) > 0) {
+                imagePreviewRepository.deleteIfPresent(image.getId());
+                cache.invalidate(image.getId());
+            }
+        }
+    }
+
+    @Override
+    public void release(Image image, int count) {
+        if (image != null) {
+            release(image.getId(), count);
+        }
+    }
+
+    @Override
+    public void release(String imageId, int count) {
+        if (imageId != null && count > 0) {
+            imageRepository.release(imageId, count);
+            if (imageRepository.deleteIfUnreferenced(imageId) > 0) {
+                imagePreviewRepository.deleteIfPresent(imageId);
+                cache.invalidate(imageId);
+            }
+        }
+    }
+
+    @Override
+    public int purge() {
+        int removed = imageRepository.deleteUnreferenced();
+        imagePreviewRepository.deleteOrphans();
+        if (removed > 0) {
+            cache.invalidateAll();
+        }
+        return removed;
+    }
+
+    /**
+     * TOO_LARGE for the images too large to be cached, they are read from the blob on every request
+     */
+    private ImageResource load(String imageId) {
+        // selecting the image row reads the blob too, the size is checked first
+        long size = imageRepository.findSize(imageId).orElseThrow(() -> new ImageNotFoundException(imageId));
+        if (size > maxCachedImage.toBytes()) {
+            return TOO_LARGE;
+        }
+        return read(imageId);
+    }
+
+    /**
+     * the content copied in memory, readable once the transaction has ended whatever the blob implementation
+     */
+    private ImageResource read(String imageId) {
+        ImageResource resource = getResource(imageId);
+        try (InputStream in = resource.getInputStream()) {
+            return new ImageResource(imageId, resource.getContentType(), StreamUtils.copyToByteArray(in));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static ImageResource toResource(Image image) {
+        return new ImageResource(image.getId(), image.getSize(), image.getContentType(), image.getData());
+    }
+
+    private String detect(byte[] prefix) throws IOException {
+        return mediaInspectionService.detect(prefix, null);
+    }
+
+    static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+}
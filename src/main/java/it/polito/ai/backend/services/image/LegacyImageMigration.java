@@ -0,0 +1,52 @@
+package it.polito.ai.backend.services.image;
+
+import it.polito.ai.backend.entities.Image;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.CommandLineRunner;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * moves the images still stored inline in the old paper, assignment, student and teacher
+ * image columns (left in place by ddl-auto=update) into the shared image store
+ */
+@Component
+public class LegacyImageMigration implements CommandLineRunner {
+
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+    @Autowired
+    ImageService imageService;
+
+    @Override
+    public void run(String... args) throws IOException {
+        migrate("paper");
+        migrate("assignment");
+        migrate("student");
+        migrate("teacher");
+    }
+
+    private void migrate(String table) throws IOException {
+        List<String> ids;
+        try {
+            ids = jdbcTemplate.queryForList("select id from " + table + " where image is not null", String.class);
+        } catch (DataAccessException e) {
+            // no legacy column, nothing to migrate
+            return;
+        }
+        for (String id : ids) {
+            byte[] data = jdbcTemplate.queryForObject("select image from " + table + " where id=?", byte[].class, id);
+            Image image = imageService.store(new ByteArrayResource(data));
+            imageService.retain(image);
+            jdbcTemplate.update("update " + table + " set image_id=?, image=null where id=?", image.getId(), id);
+        }
+        if (!ids.isEmpty()) {
+            System.out.println("Moved " + ids.size() + " " + table + " images to the image store");
+        }
+    }
+}
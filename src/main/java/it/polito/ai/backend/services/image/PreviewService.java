@@ -0,0 +1,10 @@
+package it.polito.ai.backend.services.image;
+
+public interface PreviewService {
+
+    /**
+     * queues the preview of the image, built once the current transaction commits;
+     * the request is dropped if the queue is full, the full image is served meanwhile
+     */
+    void requestPreview(String imageId);
+}
@@ -0,0 +1,169 @@
+package it.polito.ai.backend.services.image;
+
+import it.polito.ai.backend.entities.Image;
+import it.polito.ai.backend.entities.ImagePreview;
+import it.polito.ai.backend.repositories.ImagePreviewRepository;
+import it.polito.ai.backend.repositories.ImageRepository;
+import org.hibernate.engine.jdbc.BlobProxy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import javax.persistence.EntityManager;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.sql.SQLException;
+import java.util.Iterator;
+import java.util.Optional;
+
+@Service
+public class PreviewServiceImpl implements PreviewService {
+
+    @Autowired
+    ImageRepository imageRepository;
+    @Autowired
+    ImagePreviewRepository imagePreviewRepository;
+    @Autowired
+    TransactionTemplate transactionTemplate;
+    @Autowired
+    EntityManager entityManager;
+
+    @Value("${image.preview.max-size:320}")
+    int maxSize;
+    @Value("${image.preview.threads:2}")
+    int threads;
+    @Value("${image.preview.queue-capacity:500}")
+    int queueCapacity;
+
+    /**
+     * kept private instead of being a bean, so @Async and the other executors are not affected
+     */
+    private ThreadPoolTaskExecutor executor;
+
+    @PostConstruct
+    void init() {
+        executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(threads);
+        executor.setMaxPoolSize(threads);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setThreadNamePrefix("preview-");
+        executor.initialize();
+    }
+
+    @PreDestroy
+    void destroy() {
+        executor.shutdown();
+    }
+
+    @Override
+    public void requestPreview(String imageId) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            // the worker must see the committed image
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+                @Override
+                public void afterCommit() {
+                    submit(imageId);
+                }
+            });
+        } else {
+            submit(imageId);
+        }
+    }
+
+    private void submit(String imageId) {
+        try {
+            executor.execute(() -> transactionTemplate.executeWithoutResult(status -> buildPreview(imageId)));
+        } catch (TaskRejectedException e) {
+            System.out.println("Preview queue full, skipping image " + imageId);
+        }
+    }
+
+    private void buildPreview(String imageId) {
+        if (imagePreviewRepository.existsById(imageId)) {
+            return;
+        }
+        Optional<Image> image = imageRepository.findById(imageId);
+        if (!image.isPresent()) {
+            return;
+        }
+        try (InputStream in = image.get().getData().getBinaryStream()) {
+            BufferedImage scaled = scale(in);
+            if (scaled == null) {
+                // not a readable image or already small enough, the original is used as preview
+                return;
+            }
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            ImageIO.write(scaled, "jpg", out);
+            byte[] bytes = out.toByteArray();
+            // persist instead of save: the id is assigned, save would merge a copy of the blob proxy
+            entityManager.persist(ImagePreview.builder()
+                    .id(imageId)
+                    .size(bytes.length)
+                    .contentType("image/jpeg")
+                    .data(BlobProxy.generateProxy(bytes))
+                    .build());
+        } catch (IOException | SQLException e) {
+            System.out.println("Preview of image " + imageId + " failed: " + e.getMessage());
+        }
+    }
+
+    /**
+     * decodes the image subsampled close to the target size, so large uploads are never fully decoded
+     */
+    private BufferedImage scale(InputStream in) throws IOException {
+        try (ImageInputStream stream = ImageIO.createImageInputStream(in)) {
+            if (stream == null) {
+                return null;
+            }
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(stream);
+            if (!readers.hasNext()) {
+                return null;
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(stream, true, true);
+                int width = reader.getWidth(0);
+                int height = reader.getHeight(0);
+                int largest = Math.max(width, height);
+                if (largest <= maxSize) {
+                    return null;
+                }
+                ImageReadParam param = reader.getDefaultReadParam();
+                int subsampling = Math.max(1, largest / (maxSize * 2));
+                param.setSourceSubsampling(subsampling, subsampling, 0, 0);
+                BufferedImage source = reader.read(0, param);
+
+                double ratio = (double) maxSize / largest;
+                int targetWidth = Math.max(1, (int) Math.round(width * ratio));
+                int targetHeight = Math.max(1, (int) Math.round(height * ratio));
+                BufferedImage target = new BufferedImage(targetWidth, targetHeight, BufferedImage.TYPE_INT_RGB);
+                Graphics2D graphics = target.createGraphics();
+                try {
+                    graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+                    graphics.setColor(Color.WHITE);
+                    graphics.fillRect(0, 0, targetWidth, targetHeight);
+                    graphics.drawImage(source, 0, 0, targetWidth, targetHeight, null);
+                } finally {
+                    graphics.dispose();
+                }
+                return target;
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package it.polito.ai.backend.services.media;
+
+import org.springframework.core.io.InputStreamSource;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+
+public interface MediaInspectionService {
+
+    /**
+     * accepts png and jpeg uploads within the size, pixel and compression ratio limits;
+     * only the head of the file is read, the pixels are never decoded
+     */
+    void checkImage(MultipartFile file) throws IOException;
+
+    void checkImage(InputStreamSource source, long size, String name) throws IOException;
+
+    void checkCsv(MultipartFile file) throws IOException;
+
+    /**
+     * media type detected from the magic bytes of the first Utils.SNIFF_LENGTH bytes
+     */
+    String detect(InputStreamSource source, String name) throws IOException;
+
+    String detect(byte[] prefix, String name) throws IOException;
+}
@@ -0,0 +1,146 @@
+package it.polito.ai.backend.services.media;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import it.polito.ai.backend.services.Utils;
+import org.apache.tika.config.TikaConfig;
+import org.apache.tika.detect.Detector;
+import org.apache.tika.exception.TikaException;
+import org.apache.tika.io.TikaInputStream;
+import org.apache.tika.metadata.Metadata;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.InputStreamSource;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.server.ResponseStatusException;
+
+import javax.annotation.PostConstruct;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Set;
+
+@Service
+public class MediaInspectionServiceImpl implements MediaInspectionService {
+
+    private static final Set<String> IMAGE_TYPES = new HashSet<>(Arrays.asList("image/png", "image/jpeg"));
+
+    @Autowired
+    MeterRegistry meterRegistry;
+
+    @Value("${media.image.max-size:30MB}")
+    DataSize maxImageSize;
+    @Value("${media.image.max-pixels:40000000}")
+    long maxPixels;
+    /**
+     * pixels per byte of compressed data: a few bytes of png can declare a huge canvas
+     */
+    @Value("${media.image.max-pixels-per-byte:1000}")
+    long maxPixelsPerByte;
+    @Value("${media.csv.max-size:5MB}")
+    DataSize maxCsvSize;
+
+    /**
+     * building a TikaConfig scans the classpath, it is done once at startup
+     */
+    private Detector detector;
+
+    @PostConstruct
+    void init() throws TikaException, IOException {
+        detector = new TikaConfig().getDetector();
+        // loads the mime types database before the first upload
+        detector.detect(TikaInputStream.get(new byte[0]), new Metadata());
+    }
+
+    @Override
+    public void checkImage(MultipartFile file) throws IOException {
+        checkImage(file, file.getSize(), file.getOriginalFilename());
+    }
+
+    @Override
+    public void checkImage(InputStreamSource source, long size, String name) throws IOException {
+        Timer.Sample sample = Timer.start(meterRegistry);
+        String outcome = "rejected";
+        try {
+            if (size == 0) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "file empty");
+            }
+            if (size > maxImageSize.toBytes()) {
+                throw new ResponseStatusException(HttpStatus.PAYLOAD_TOO_LARGE, "image larger than " + maxImageSize);
+            }
+            String type = detect(source, name);
+            if (!IMAGE_TYPES.contains(type)) {
+                throw new ResponseStatusException(HttpStatus.UNSUPPORTED_MEDIA_TYPE, type);
+            }
+            checkDimensions(source, size);
+            outcome = "accepted";
+        } finally {
+            sample.stop(meterRegistry.timer("media.inspection", "kind", "image", "outcome", outcome));
+        }
+    }
+
+    @Override
+    public void checkCsv(MultipartFile file) throws IOException {
+        Timer.Sample sample = Timer.start(meterRegistry);
+        String outcome = "rejected";
+        try {
+            if (file.getSize() > maxCsvSize.toBytes()) {
+                throw new ResponseStatusException(HttpStatus.PAYLOAD_TOO_LARGE, "file larger than " + maxCsvSize);
+            }
+            String type = detect(file, file.getOriginalFilename());
+            if (!type.equalsIgnoreCase("text/csv")) {
+                throw new ResponseStatusException(HttpStatus.UNSUPPORTED_MEDIA_TYPE, type);
+            }
+            outcome = "accepted";
+        } finally {
+            sample.stop(meterRegistry.timer("media.inspection", "kind", "csv", "outcome", outcome));
+        }
+    }
+
+    @Override
+    public String detect(InputStreamSource source, String name) throws IOException {
+        return detect(Utils.readPrefix(source), name);
+    }
+
+    @Override
+    public String detect(byte[] prefix, String name) throws IOException {
+        Metadata metadata = new Metadata();
+        if (name != null) {
+            metadata.set(Metadata.RESOURCE_NAME_KEY, name);
+        }
+        return detector.detect(TikaInputStream.get(prefix), metadata).toString();
+    }
+
+    /**
+     * reads only the image header, the declared size is checked before anything is decoded
+     */
+    private void checkDimensions(InputStreamSource source, long size) throws IOException {
+        try (InputStream in = source.getInputStream(); ImageInputStream stream = ImageIO.createImageInputStream(in)) {
+            Iterator<ImageReader> readers = stream == null ? null : ImageIO.getImageReaders(stream);
+            if (readers == null || !readers.hasNext()) {
+                throw new ResponseStatusException(HttpStatus.UNSUPPORTED_MEDIA_TYPE, "unreadable image");
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(stream, true, true);
+                long pixels = (long) reader.getWidth(0) * reader.getHeight(0);
+                if (pixels > maxPixels) {
+                    throw new ResponseStatusException(HttpStatus.PAYLOAD_TOO_LARGE, "image larger than " + maxPixels + " pixels");
+                }
+                if (pixels / size > maxPixelsPerByte) {
+                    throw new ResponseStatusException(HttpStatus.UNPROCESSABLE_ENTITY, "image compression ratio too high");
+                }
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+}
@@ -10,6 +10,7 @@ import it.polito.ai.backend.repositories.StudentRepository;
 import it.polito.ai.backend.repositories.TeamRepository;
 import it.polito.ai.backend.repositories.TokenRepository;
 import it.polito.ai.backend.services.Utils;
+import it.polito.ai.backend.services.deadline.DeadlineService;
 import it.polito.ai.backend.services.team.StudentNotEnrolledException;
 import it.polito.ai.backend.services.team.StudentNotFoundException;
 import it.polito.ai.backend.services.team.TeamNotFoundException;
@@ -51,6 +52,8 @@ public class NotificationServiceImpl implements NotificationService {
     StudentRepository studentRepository;
     @Autowired
     TeamRepository teamRepository;
+    @Autowired
+    DeadlineService deadlineService;
 
     @Async
     @Override
@@ -203,6 +206,7 @@ public class NotificationServiceImpl implements NotificationService {
         if (!(members.size()-1 == memberIds.size())){
             throw new StudentNotFoundException(members.toString());
         }
+        deadlineService.schedule(DeadlineType.TEAM_PROPOSAL_EXPIRY, teamDTO.getId().toString(), timeout);
 
         memberIds.forEach(id -> {
             String tokenId = UUID.randomUUID().toString();
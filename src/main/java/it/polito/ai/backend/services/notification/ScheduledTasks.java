@@ -3,9 +3,16 @@ package it.polito.ai.backend.services.notification;
 import it.polito.ai.backend.entities.*;
 import it.polito.ai.backend.repositories.*;
 import it.polito.ai.backend.security.CustomUserDetailsService;
+import it.polito.ai.backend.security.MembershipIndex;
+import it.polito.ai.backend.security.TokenRevocationStore;
 import it.polito.ai.backend.services.Utils;
-import it.polito.ai.backend.dtos.PaperStatus;
+import it.polito.ai.backend.services.assignment.ExpiredAssignmentSweeper;
+import it.polito.ai.backend.services.assignment.PaperHistoryCompactor;
+import it.polito.ai.backend.services.deadline.DeadlineService;
+import it.polito.ai.backend.services.image.ImageService;
+import it.polito.ai.backend.services.team.TeamProposalExpiryHandler;
 import it.polito.ai.backend.services.team.TeamService;
+import it.polito.ai.backend.services.upload.UploadService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.scheduling.annotation.EnableScheduling;
 import org.springframework.scheduling.annotation.Scheduled;
@@ -14,6 +21,7 @@ import org.springframework.stereotype.Component;
 import javax.transaction.Transactional;
 import java.sql.Timestamp;
 import java.util.*;
+import java.util.stream.Collectors;
 
 @Component
 @Transactional
@@ -23,81 +31,59 @@ public class ScheduledTasks {
     @Autowired
     TokenRepository tokenRepository;
     @Autowired
-    PaperRepository paperRepository;
+    ExpiredAssignmentSweeper expiredAssignmentSweeper;
     @Autowired
-    AssignmentRepository exerciseRepository;
+    PaperHistoryCompactor paperHistoryCompactor;
     @Autowired
-    CourseRepository courseRepository;
+    TeamProposalExpiryHandler teamProposalExpiryHandler;
     @Autowired
-    TeamService teamService;
+    DeadlineService deadlineService;
     @Autowired
-    JwtBlackListRepository jwtBlackListRepository;
+    TokenRevocationStore tokenRevocationStore;
+    @Autowired
+    MembershipIndex membershipIndex;
     @Autowired
     ConfirmationTokenRepository confirmationTokenRepository;
     @Autowired
     UserRepository userRepository;
     @Autowired
     CustomUserDetailsService userService;
+    @Autowired
+    ImageService imageService;
+    @Autowired
+    UploadService uploadService;
+
+    /*
+     * every 5 minutes, and at startup for the deadlines missed while stopped
+     * */
+    @Scheduled(fixedDelayString = "${deadline.load-interval:300000}")
+    @Transactional(Transactional.TxType.NOT_SUPPORTED)
+    public void loadDeadlines() {
+        deadlineService.load();
+    }
 
     /*
-    * every day at 4am
+    * every day at 4am, the proposals expire on their own deadline, this only catches the ones left behind
     * */
     @Scheduled(cron = "0 0 4 * * ?")
     public void cleanTokensAndProposeTeam() {
-        List<Token> tokens = tokenRepository.findAllByExpiryDateBefore(Utils.getNow());
-        System.out.println("Found "+tokens.size()+" tokens to be removed");
-        tokens.forEach(token -> {
-                    if(!token.getStatus().equals(TokenStatus.ACCEPT))
-                        teamService.evictTeam(token.getTeamId()); });
-        tokenRepository.deleteAll(tokens);
-        System.out.println("Token repository cleaned and alla proposes team");
+        Set<Long> teamIds = tokenRepository.findAllByExpiryDateBefore(Utils.getNow())
+                .stream()
+                .map(Token::getTeamId)
+                .collect(Collectors.toSet());
+        System.out.println("Found "+teamIds.size()+" team proposals to be removed");
+        teamIds.forEach(teamId -> teamProposalExpiryHandler.expire(teamId.toString()));
     }
 
     /*
-     * every day at 4:00am
+     * every day at 4:00am, the assignments expire on their own deadline, this only catches the ones left behind
      * */
     @Scheduled(cron = "0 00 4 * * ?")
+    @Transactional(Transactional.TxType.NOT_SUPPORTED)
     public void expiredAssignment() {
-
-        /** check expired assignments*/
-        List<Assignment> assignments = exerciseRepository.findByExpiredBefore(Utils.getNow());
-        System.out.println(assignments.size());
-        HashSet<Student> students = new HashSet<Student>();
-        List<Paper> papers = new ArrayList<Paper>();
-        /** Find students for expired assignments */
-        for (Assignment assignment : assignments) {
-            Optional<Course> course = courseRepository.findById(assignment.getCourse().getId());
-            course.ifPresent(value -> students.addAll(value.getStudents()));
-
-        }
-
-        /** Find last paper for student*/
-        if(!students.isEmpty()){
-            for(Assignment assignment : assignments){
-                for (Student s:students) {
-                    papers.add( paperRepository.findByStudentAndAssignment(s, assignment)
-                            .stream()
-                            .sorted(Comparator.comparing(Paper::getPublished, Timestamp::compareTo))
-                    .reduce((a1,a2)->a2).orElse(null));
-                 }
-            }
-        }
-
-        for (Paper a: papers) {
-            /** If status!= Delivered and flag==true => status= delivered and flag=false*/
-            if(a!=null && a.getStatus()!= PaperStatus.DELIVERED && a.isFlag()){
-                Paper ac = new Paper();
-                ac.setImage(a.getImage());
-                ac.setStudent(a.getStudent());
-                ac.setStatus(PaperStatus.DELIVERED);
-                ac.setPublished(Utils.getNow());
-                ac.setAssignment(a.getAssignment());
-                ac.setScore(null);
-                ac.setFlag(false);
-                paperRepository.save(ac);
-            }
-        }
-        System.out.println("Chek assignment expired");
+        /** every chunk of expired assignments is committed on its own */
+        int delivered = expiredAssignmentSweeper.sweep();
+        System.out.println("Chek assignment expired, delivered "+delivered+" papers");
     }
 
     /*
@@ -118,14 +104,62 @@ public class ScheduledTasks {
 
     }
 
+    /*
+     * every 10 seconds, the tokens revoked by the other instances
+     * */
+    @Scheduled(fixedDelayString = "${security.jwt.revocation.refresh-interval:10000}")
+    @Transactional(Transactional.TxType.NOT_SUPPORTED)
+    public void refreshRevocations() {
+        tokenRevocationStore.refresh();
+    }
+
+    /*
+     * every hour, the memberships changed by sql; the ones changed by this instance are dropped as they commit
+     * */
+    @Scheduled(initialDelayString = "${security.membership.reload-interval:3600000}", fixedDelayString = "${security.membership.reload-interval:3600000}")
+    @Transactional(Transactional.TxType.NOT_SUPPORTED)
+    public void reloadMemberships() {
+        membershipIndex.reload();
+    }
+
     /*
      * every day at 4:00am
      * */
     @Scheduled(cron = "0 00 04 * * ?")
     public void clearBlackList() {
-        jwtBlackListRepository.deleteAll();
-        System.out.println("JwtTokenBlackList is clear");
+        /** only the tokens expired by now, the others are still revoked */
+        int purged = tokenRevocationStore.purge();
+        System.out.println("JwtTokenBlackList purged " + purged + " expired tokens");
+
+    }
+
+    /*
+     * every day at 3am
+     * */
+    @Scheduled(cron = "0 0 3 * * ?")
+    @Transactional(Transactional.TxType.NOT_SUPPORTED)
+    public void compactPaperHistory() {
+        /** every chunk of papers is committed on its own */
+        int removed = paperHistoryCompactor.compact();
+        System.out.println("Compacted paper history, removed "+removed+" papers");
+    }
 
+    /*
+     * every day at 4:30am, after the expired assignments have been processed
+     * */
+    @Scheduled(cron = "0 30 4 * * ?")
+    public void purgeImages() {
+        int removed = imageService.purge();
+        System.out.println("Removed "+removed+" unreferenced images");
+    }
+
+    /*
+     * every hour
+     * */
+    @Scheduled(cron = "0 0 * * * ?")
+    public void deleteExpiredUploads() {
+        int removed = uploadService.deleteExpired();
+        System.out.println("Removed "+removed+" expired uploads");
     }
 
 
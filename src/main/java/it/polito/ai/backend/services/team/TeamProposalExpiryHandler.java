@@ -0,0 +1,54 @@
+package it.polito.ai.backend.services.team;
+
+import it.polito.ai.backend.entities.DeadlineType;
+import it.polito.ai.backend.entities.Token;
+import it.polito.ai.backend.entities.TokenStatus;
+import it.polito.ai.backend.repositories.TeamRepository;
+import it.polito.ai.backend.repositories.TokenRepository;
+import it.polito.ai.backend.services.Utils;
+import it.polito.ai.backend.services.deadline.DeadlineHandler;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import javax.transaction.Transactional;
+import java.sql.Timestamp;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * removes the expired tokens of a proposed team, the team is removed too unless every member accepted
+ */
+@Component
+@Transactional
+public class TeamProposalExpiryHandler implements DeadlineHandler {
+
+    @Autowired
+    TokenRepository tokenRepository;
+    @Autowired
+    TeamRepository teamRepository;
+    @Autowired
+    TeamServiceImpl teamService;
+
+    @Override
+    public DeadlineType getType() {
+        return DeadlineType.TEAM_PROPOSAL_EXPIRY;
+    }
+
+    @Override
+    public void expire(String target) {
+        Long teamId = Long.valueOf(target);
+        Timestamp now = Utils.getNow();
+        List<Token> tokens = tokenRepository.findAllByTeamId(teamId).stream()
+                .filter(t -> !t.getExpiryDate().after(now))
+                .collect(Collectors.toList());
+        if (tokens.isEmpty()) {
+            return;
+        }
+        if (tokens.stream().anyMatch(t -> !t.getStatus().equals(TokenStatus.ACCEPT))) {
+            // TeamService.evictTeam is reserved to the members, here there is no principal
+            teamRepository.findById(teamId).ifPresent(teamService::deleteTeam);
+        }
+        tokenRepository.deleteAll(tokens);
+        System.out.println("Removed "+tokens.size()+" expired tokens of team "+teamId);
+    }
+}
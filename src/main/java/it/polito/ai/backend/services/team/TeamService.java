@@ -4,6 +4,7 @@ import it.polito.ai.backend.dtos.CourseDTO;
 import it.polito.ai.backend.dtos.StudentDTO;
 import it.polito.ai.backend.dtos.TeacherDTO;
 import it.polito.ai.backend.dtos.TeamDTO;
+import org.springframework.core.io.InputStreamSource;
 
 import java.io.IOException;
 import java.io.Reader;
@@ -16,6 +17,7 @@ public interface TeamService {
     Optional<CourseDTO> getCourse(String courseId);
 
     boolean addStudent(StudentDTO student);
+    boolean addStudent(StudentDTO student, InputStreamSource image) throws IOException;
 
     Optional<StudentDTO> getStudent(String studentId);
 
@@ -57,6 +59,7 @@ public interface TeamService {
     void evictTeam(Long teamId);
 
     boolean addTeacher(TeacherDTO teacher);
+    boolean addTeacher(TeacherDTO teacher, InputStreamSource image) throws IOException;
     boolean addTeacherToCourse(String teacherId, String courseId);
     Optional<TeacherDTO> getTeacher(String id);
     List<CourseDTO> getCoursesForTeacher(String id);
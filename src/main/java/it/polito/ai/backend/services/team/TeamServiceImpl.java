@@ -8,18 +8,23 @@ import it.polito.ai.backend.dtos.TeacherDTO;
 import it.polito.ai.backend.dtos.TeamDTO;
 import it.polito.ai.backend.entities.*;
 import it.polito.ai.backend.repositories.*;
+import it.polito.ai.backend.services.image.ImageIngestService;
+import it.polito.ai.backend.services.image.ImageService;
 import it.polito.ai.backend.services.notification.NotificationService;
 import org.modelmapper.ModelMapper;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.core.io.ClassPathResource;
+import org.springframework.core.io.InputStreamSource;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.stereotype.Service;
 
 import javax.transaction.Transactional;
 import java.io.IOException;
 import java.io.Reader;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.stream.Collectors;
 
@@ -42,11 +47,17 @@ public class TeamServiceImpl implements TeamService {
     @Autowired
     PaperRepository paperRepository;
     @Autowired
+    LatestPaperRepository latestPaperRepository;
+    @Autowired
     VirtualMachineRepository virtualMachineRepository;
     @Autowired
     ModelMapper modelMapper;
     @Autowired
     NotificationService notificationService;
+    @Autowired
+    ImageService imageService;
+    @Autowired
+    ImageIngestService imageIngestService;
 
     @Override
     @PreAuthorize("hasRole('TEACHER') and @securityServiceImpl.isAuthorized(#course.getTeacherId())")
@@ -76,9 +87,22 @@ public class TeamServiceImpl implements TeamService {
 
     @Override
     public boolean addStudent(StudentDTO student) {
+        return saveStudent(student, null);
+    }
+
+    @Override
+    public boolean addStudent(StudentDTO student, InputStreamSource image) throws IOException {
+        if (studentRepository.existsById(student.getId())) {
+            return false;
+        }
+        return saveStudent(student, image == null ? null : imageIngestService.ingest(image));
+    }
+
+    private boolean saveStudent(StudentDTO student, Image image) {
         if (!studentRepository.existsById(student.getId())) {
             Student s = modelMapper.map(student, Student.class);
-
+            s.setImage(image);
+            imageService.retain(image);
             studentRepository.save(s);
             return true;
         }
@@ -457,19 +481,40 @@ public class TeamServiceImpl implements TeamService {
         if (!team.isPresent()) {
             throw new TeamNotFoundException(teamId.toString());
         }
-        if (team.get().getMembers().size() > 0) {
-            for (Student s : team.get().getMembers()) {
-                s.getTeams().remove(team.get());
+        deleteTeam(team.get());
+    }
+
+    /**
+     * removes the team and its memberships, without checking the principal
+     */
+    void deleteTeam(Team team) {
+        if (team.getMembers().size() > 0) {
+            for (Student s : team.getMembers()) {
+                s.getTeams().remove(team);
             }
-            team.get().getMembers().clear();
+            team.getMembers().clear();
         }
-        teamRepository.delete(team.get());
+        teamRepository.delete(team);
     }
 
     @Override
     public boolean addTeacher(TeacherDTO teacher) {
+        return saveTeacher(teacher, null);
+    }
+
+    @Override
+    public boolean addTeacher(TeacherDTO teacher, InputStreamSource image) throws IOException {
+        if (teacherRepository.existsById(teacher.getId())) {
+            return false;
+        }
+        return saveTeacher(teacher, image == null ? null : imageIngestService.ingest(image));
+    }
+
+    private boolean saveTeacher(TeacherDTO teacher, Image image) {
         if (!teacherRepository.existsById(teacher.getId())) {
             Teacher t = modelMapper.map(teacher, Teacher.class);
+            t.setImage(image);
+            imageService.retain(image);
             teacherRepository.save(t);
             return true;
         }
@@ -539,6 +584,22 @@ public class TeamServiceImpl implements TeamService {
          */
         course.setVirtualMachineModel(null);
         course.removeTeams();
+        // one release per image, counted by id: hashing the image proxies would read their content
+        Map<String, Integer> references = new HashMap<>();
+        for (Assignment assignment : course.getAssignments()) {
+            for (Paper paper : assignment.getPapers()) {
+                if (paper.getImage() != null) {
+                    references.merge(paper.getImage().getId(), 1, Integer::sum);
+                }
+            }
+            if (assignment.getImage() != null) {
+                references.merge(assignment.getImage().getId(), 1, Integer::sum);
+            }
+        }
+        references.forEach((imageId, count) -> imageService.release(imageId, count));
+        if (!course.getAssignments().isEmpty()) {
+            latestPaperRepository.deleteByAssignmentIn(course.getAssignments().stream().map(Assignment::getId).collect(Collectors.toList()));
+        }
         course.removeAssignments();
 
         courseRepository.delete(course);
@@ -0,0 +1,7 @@
+package it.polito.ai.backend.services.upload;
+
+public class UploadConflictException extends UploadServiceException {
+    public UploadConflictException(String message) {
+        super(message);
+    }
+}
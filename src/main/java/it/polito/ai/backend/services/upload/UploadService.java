@@ -0,0 +1,34 @@
+package it.polito.ai.backend.services.upload;
+
+import it.polito.ai.backend.dtos.UploadSessionDTO;
+import org.springframework.core.io.Resource;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Optional;
+
+public interface UploadService {
+
+    /**
+     * student
+     */
+    UploadSessionDTO open(Long assignmentId, String studentId, long size) throws IOException;
+    Optional<UploadSessionDTO> getSession(Long assignmentId, String studentId, String uploadId);
+
+    /**
+     * writes the chunk at offset, which must be the number of bytes already received;
+     * the bytes read before a broken connection are kept
+     */
+    UploadSessionDTO append(Long assignmentId, String studentId, String uploadId, long offset, InputStream chunk) throws IOException;
+
+    /**
+     * the assembled file, once every byte has been received
+     */
+    Resource getContent(Long assignmentId, String studentId, String uploadId);
+    void close(Long assignmentId, String studentId, String uploadId);
+
+    /**
+     * removes the sessions older than upload.expiration together with their files
+     */
+    int deleteExpired();
+}
@@ -0,0 +1,7 @@
+package it.polito.ai.backend.services.upload;
+
+public class UploadServiceException extends RuntimeException {
+    public UploadServiceException(String message) {
+        super(message);
+    }
+}
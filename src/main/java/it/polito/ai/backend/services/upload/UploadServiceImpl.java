@@ -0,0 +1,199 @@
+package it.polito.ai.backend.services.upload;
+
+import it.polito.ai.backend.dtos.UploadSessionDTO;
+import it.polito.ai.backend.entities.UploadSession;
+import it.polito.ai.backend.repositories.UploadSessionRepository;
+import it.polito.ai.backend.services.Utils;
+import org.modelmapper.ModelMapper;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.util.unit.DataSize;
+
+import javax.annotation.PostConstruct;
+import javax.transaction.Transactional;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+@Service
+@Transactional
+public class UploadServiceImpl implements UploadService {
+
+    @Autowired
+    UploadSessionRepository uploadSessionRepository;
+    @Autowired
+    ModelMapper modelMapper;
+
+    /**
+     * where the chunks are written, one file per session
+     */
+    @Value("${upload.dir:${java.io.tmpdir}/uploads}")
+    String dir;
+    @Value("${upload.expiration:24h}")
+    Duration expiration;
+    @Value("${media.image.max-size:30MB}")
+    DataSize maxSize;
+
+    @PostConstruct
+    void init() throws IOException {
+        Files.createDirectories(Paths.get(dir));
+    }
+
+    @Override
+    @PreAuthorize("hasRole('STUDENT') and @securityServiceImpl.canView(#assignmentId) and @securityServiceImpl.isDone(#assignmentId) and @securityServiceImpl.isAuthorized(#studentId)")
+    public UploadSessionDTO open(Long assignmentId, String studentId, long size) throws IOException {
+        if (size > maxSize.toBytes()) {
+            throw new UploadSizeException("image larger than " + maxSize);
+        }
+        UploadSession session = UploadSession.builder()
+                .id(UUID.randomUUID().toString())
+                .studentId(studentId)
+                .assignmentId(assignmentId)
+                .size(size)
+                .received(0)
+                .created(Utils.getNow())
+                .build();
+        Files.createFile(partOf(session.getId()));
+        return modelMapper.map(uploadSessionRepository.save(session), UploadSessionDTO.class);
+    }
+
+    @Override
+    @PreAuthorize("hasRole('STUDENT') and @securityServiceImpl.isAuthorized(#studentId)")
+    public Optional<UploadSessionDTO> getSession(Long assignmentId, String studentId, String uploadId) {
+        return uploadSessionRepository.findById(uploadId)
+                .filter(s -> s.getAssignmentId().equals(assignmentId) && s.getStudentId().equals(studentId))
+                .map(s -> modelMapper.map(s, UploadSessionDTO.class));
+    }
+
+    /**
+     * no transaction is kept open while the chunk is read from the network
+     */
+    @Override
+    @Transactional(Transactional.TxType.NOT_SUPPORTED)
+    @PreAuthorize("hasRole('STUDENT') and @securityServiceImpl.isAuthorized(#studentId)")
+    public UploadSessionDTO append(Long assignmentId, String studentId, String uploadId, long offset, InputStream chunk) throws IOException {
+        Path part = partOf(findSession(assignmentId, studentId, uploadId).getId());
+        try (FileChannel channel = FileChannel.open(part, StandardOpenOption.WRITE);
+             FileLock lock = tryLock(channel)) {
+            if (lock == null) {
+                throw new UploadConflictException("upload " + uploadId + " is already receiving a chunk");
+            }
+            // read again under the lock, a concurrent chunk may have moved the offset
+            UploadSession session = findSession(assignmentId, studentId, uploadId);
+            if (offset != session.getReceived()) {
+                throw new UploadConflictException("upload " + uploadId + " expects offset " + session.getReceived());
+            }
+            // drops the tail of a chunk that was written but never recorded
+            channel.truncate(offset);
+            ReadableByteChannel source = Channels.newChannel(chunk);
+            long remaining = session.getSize() - offset;
+            long written = 0;
+            try {
+                long n;
+                while (written < remaining && (n = channel.transferFrom(source, offset + written, remaining - written)) > 0) {
+                    written += n;
+                }
+                if (written == remaining && chunk.read() != -1) {
+                    written = 0;
+                    channel.truncate(offset);
+                    throw new UploadSizeException("upload " + uploadId + " is larger than " + session.getSize() + " bytes");
+                }
+            } finally {
+                if (written > 0) {
+                    channel.force(false);
+                    session.setReceived(offset + written);
+                    uploadSessionRepository.save(session);
+                }
+            }
+            return modelMapper.map(session, UploadSessionDTO.class);
+        }
+    }
+
+    @Override
+    @PreAuthorize("hasRole('STUDENT') and @securityServiceImpl.isAuthorized(#studentId)")
+    public Resource getContent(Long assignmentId, String studentId, String uploadId) {
+        UploadSession session = findSession(assignmentId, studentId, uploadId);
+        if (session.getReceived() < session.getSize()) {
+            throw new UploadConflictException("upload " + uploadId + " has received " + session.getReceived() + " of " + session.getSize() + " bytes");
+        }
+        return new FileSystemResource(partOf(session.getId()));
+    }
+
+    @Override
+    @PreAuthorize("hasRole('STUDENT') and @securityServiceImpl.isAuthorized(#studentId)")
+    public void close(Long assignmentId, String studentId, String uploadId) {
+        delete(findSession(assignmentId, studentId, uploadId));
+    }
+
+    @Override
+    public int deleteExpired() {
+        List<UploadSession> sessions = uploadSessionRepository.findAllByCreatedBefore(
+                new Timestamp(Utils.getNow().getTime() - expiration.toMillis()));
+        sessions.forEach(this::delete);
+        return sessions.size();
+    }
+
+    private UploadSession findSession(Long assignmentId, String studentId, String uploadId) {
+        return uploadSessionRepository.findById(uploadId)
+                .filter(s -> s.getAssignmentId().equals(assignmentId) && s.getStudentId().equals(studentId))
+                .orElseThrow(() -> new UploadSessionNotFoundException(uploadId));
+    }
+
+    /**
+     * the file is removed only if the session row is, a rolled back commit can be retried
+     */
+    private void delete(UploadSession session) {
+        uploadSessionRepository.delete(session);
+        Path part = partOf(session.getId());
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+                @Override
+                public void afterCommit() {
+                    deleteFile(part);
+                }
+            });
+        } else {
+            deleteFile(part);
+        }
+    }
+
+    private void deleteFile(Path part) {
+        try {
+            Files.deleteIfExists(part);
+        } catch (IOException e) {
+            System.out.println("Unable to delete " + part + ": " + e.getMessage());
+        }
+    }
+
+    private FileLock tryLock(FileChannel channel) throws IOException {
+        try {
+            return channel.tryLock();
+        } catch (OverlappingFileLockException e) {
+            // held by another thread of this process
+            return null;
+        }
+    }
+
+    private Path partOf(String uploadId) {
+        return Paths.get(dir).resolve(uploadId + ".part");
+    }
+}
@@ -0,0 +1,7 @@
+package it.polito.ai.backend.services.upload;
+
+public class UploadSessionNotFoundException extends UploadServiceException {
+    public UploadSessionNotFoundException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,7 @@
+package it.polito.ai.backend.services.upload;
+
+public class UploadSizeException extends UploadServiceException {
+    public UploadSizeException(String message) {
+        super(message);
+    }
+}
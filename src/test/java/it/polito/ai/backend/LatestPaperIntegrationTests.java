@@ -0,0 +1,146 @@
+package it.polito.ai.backend;
+
+import it.polito.ai.backend.dtos.PaperStatus;
+import it.polito.ai.backend.entities.*;
+import it.polito.ai.backend.repositories.*;
+import it.polito.ai.backend.services.assignment.LatestPaperMigration;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import javax.persistence.EntityManager;
+import javax.transaction.Transactional;
+import java.sql.Timestamp;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+
+@SpringBootTest
+@Transactional
+@ActiveProfiles("dev")
+public class LatestPaperIntegrationTests {
+
+    @Autowired
+    LatestPaperRepository latestPaperRepository;
+    @Autowired
+    PaperRepository paperRepository;
+    @Autowired
+    CourseRepository courseRepository;
+    @Autowired
+    StudentRepository studentRepository;
+    @Autowired
+    AssignmentRepository assignmentRepository;
+    @Autowired
+    LatestPaperMigration latestPaperMigration;
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+    @Autowired
+    EntityManager entityManager;
+
+    Student first;
+    Student second;
+    Assignment assignment;
+
+    @BeforeEach
+    void setUp() {
+        Course course = new Course();
+        course.setId("latest-paper-course");
+        course.setName("latest paper course");
+        course.setMin(1);
+        course.setMax(5);
+        course = courseRepository.save(course);
+        first = studentRepository.save(student("latest-paper-s1"));
+        second = studentRepository.save(student("latest-paper-s2"));
+        assignment = new Assignment();
+        assignment.setCourse(course);
+        assignment.setPublished(at(0));
+        assignment.setExpired(at(100));
+        assignment = assignmentRepository.save(assignment);
+    }
+
+    @Test
+    void moveToFollowsNewestPaper() {
+        for (int i = 1; i <= 4; i++) {
+            Paper paper = paper(first, at(i), i % 2 == 0 ? PaperStatus.DELIVERED : PaperStatus.READ);
+            latestPaperRepository.moveTo(paper);
+            entityManager.flush();
+            Assertions.assertEquals(newest(first), latestPaperRepository.findPaper(first.getId(), assignment.getId()).map(Paper::getId));
+        }
+        latestPaperRepository.moveTo(paper(second, at(2), PaperStatus.READ));
+        entityManager.flush();
+
+        Assertions.assertEquals(newest(first), latestPaperRepository.findPaper(first.getId(), assignment.getId()).map(Paper::getId));
+        Assertions.assertEquals(newest(second), latestPaperRepository.findPaper(second.getId(), assignment.getId()).map(Paper::getId));
+        // one current paper per student
+        Assertions.assertEquals(2, latestPaperRepository.findSummariesByAssignment(assignment.getId()).size());
+        Assertions.assertEquals(2, latestPaperRepository.countByStatus(assignment.getId()).stream().mapToLong(PaperStatusCount::getPapers).sum());
+    }
+
+    @Test
+    void migrationMatchesHistory() {
+        // papers saved before the pointers were maintained, the last two of the first student published at once
+        paper(first, at(1), PaperStatus.READ);
+        paper(first, at(3), PaperStatus.DELIVERED);
+        paper(first, at(3), PaperStatus.REVISED);
+        paper(second, at(2), PaperStatus.READ);
+        paper(second, at(1), PaperStatus.NULL);
+        entityManager.flush();
+
+        latestPaperMigration.run();
+        entityManager.clear();
+
+        for (Student student : Arrays.asList(first, second)) {
+            Assertions.assertEquals(newest(student), latestPaperRepository.findPaper(student.getId(), assignment.getId()).map(Paper::getId));
+        }
+    }
+
+    @Test
+    void migrationKeepsExistingPointers() {
+        Paper current = paper(first, at(1), PaperStatus.READ);
+        latestPaperRepository.moveTo(current);
+        entityManager.flush();
+        // a newer paper that did not move the pointer: the backfill only fills missing pointers
+        paper(first, at(2), PaperStatus.DELIVERED);
+        entityManager.flush();
+
+        latestPaperMigration.run();
+        entityManager.clear();
+
+        Assertions.assertEquals(Optional.of(current.getId()), latestPaperRepository.findPaper(first.getId(), assignment.getId()).map(Paper::getId));
+    }
+
+    private static Student student(String id) {
+        Student student = new Student();
+        student.setId(id);
+        student.setFirstName("first");
+        student.setLastName("last");
+        student.setEmail(id + "@studenti.polito.it");
+        return student;
+    }
+
+    private Paper paper(Student student, Timestamp published, PaperStatus status) {
+        Paper paper = new Paper();
+        paper.setStudent(student);
+        paper.setAssignment(assignment);
+        paper.setPublished(published);
+        paper.setStatus(status);
+        return paperRepository.save(paper);
+    }
+
+    /**
+     * the newest paper in the history, ties on the publication broken by the id
+     */
+    private Optional<Long> newest(Student student) {
+        List<Long> ids = jdbcTemplate.queryForList("select id from paper where student=? and assignment_id=? order by published desc, id desc",
+                Long.class, student.getId(), assignment.getId());
+        return ids.stream().findFirst();
+    }
+
+    private static Timestamp at(int minutes) {
+        return new Timestamp(1600000000000L + minutes * 60000L);
+    }
+}
@@ -0,0 +1,87 @@
+package it.polito.ai.backend.security;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+public class BloomFilterUnitTests {
+
+    @Test
+    void sizedForExpectedKeys() {
+        BloomFilter filter = new BloomFilter(100000, 0.001);
+        // m = -n ln p / ln^2 2 bits, k = m / n ln 2 hashes
+        Assertions.assertEquals(0, filter.size % 64);
+        Assertions.assertTrue(filter.size >= 1437759 && filter.size < 1437759 + 64);
+        Assertions.assertEquals(10, filter.hashes);
+
+        BloomFilter tiny = new BloomFilter(0, 0.5);
+        Assertions.assertEquals(64, tiny.size);
+        Assertions.assertTrue(tiny.hashes >= 1);
+    }
+
+    @Test
+    void bitsAreIndexedByWord() {
+        BloomFilter filter = new BloomFilter(1000, 0.01);
+        // with no second hash every round sets the same bit, in the second word
+        filter.add(digest(70, 0));
+
+        Assertions.assertTrue(filter.mightContain(digest(70, 0)));
+        Assertions.assertTrue(filter.mightContain(digest(70 + filter.size, 0)));
+        // same position in the first word, and the neighbours in the same word
+        Assertions.assertFalse(filter.mightContain(digest(6, 0)));
+        Assertions.assertFalse(filter.mightContain(digest(69, 0)));
+        Assertions.assertFalse(filter.mightContain(digest(71, 0)));
+    }
+
+    @Test
+    void negativeHashesWrap() {
+        BloomFilter filter = new BloomFilter(1000, 0.01);
+        filter.add(digest(-1, 0));
+
+        Assertions.assertTrue(filter.mightContain(digest(filter.size - 1, 0)));
+        Assertions.assertFalse(filter.mightContain(digest(filter.size - 2, 0)));
+    }
+
+    @Test
+    void noFalseNegatives() {
+        BloomFilter filter = new BloomFilter(10000, 0.01);
+        Random random = new Random(42);
+        byte[][] added = new byte[10000][32];
+        for (byte[] digest : added) {
+            random.nextBytes(digest);
+            filter.add(digest);
+        }
+        for (byte[] digest : added) {
+            Assertions.assertTrue(filter.mightContain(digest));
+        }
+
+        int falsePositives = 0;
+        byte[] other = new byte[32];
+        for (int i = 0; i < 100000; i++) {
+            random.nextBytes(other);
+            if (filter.mightContain(other)) {
+                falsePositives++;
+            }
+        }
+        // 1% expected, with some margin
+        Assertions.assertTrue(falsePositives < 2000, falsePositives + " false positives");
+    }
+
+    @Test
+    void digestsOfTokensAreFound() {
+        BloomFilter filter = new BloomFilter(10, 0.001);
+        filter.add(TokenRevocationStore.digest("a.b.c"));
+
+        Assertions.assertTrue(filter.mightContain(TokenRevocationStore.digest("a.b.c")));
+        Assertions.assertFalse(filter.mightContain(TokenRevocationStore.digest("a.b.d")));
+    }
+
+    /**
+     * a digest whose first 16 bytes are the two hashes
+     */
+    private static byte[] digest(long h1, long h2) {
+        return ByteBuffer.allocate(32).putLong(h1).putLong(h2).array();
+    }
+}
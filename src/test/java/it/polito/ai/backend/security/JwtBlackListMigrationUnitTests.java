@@ -0,0 +1,62 @@
+package it.polito.ai.backend.security;
+
+import it.polito.ai.backend.entities.JwtBlackList;
+import it.polito.ai.backend.repositories.JwtBlackListRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+import java.sql.Timestamp;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+
+public class JwtBlackListMigrationUnitTests {
+
+    JwtBlackListMigration migration;
+    JwtBlackListRepository jwtBlackListRepository;
+    JwtTokenProvider jwtTokenProvider;
+    TokenRevocationStore tokenRevocationStore;
+
+    @BeforeEach
+    void setUp() {
+        jwtBlackListRepository = Mockito.mock(JwtBlackListRepository.class);
+        jwtTokenProvider = Mockito.mock(JwtTokenProvider.class);
+        tokenRevocationStore = Mockito.mock(TokenRevocationStore.class);
+        migration = new JwtBlackListMigration();
+        migration.jwtBlackListRepository = jwtBlackListRepository;
+        migration.jwtTokenProvider = jwtTokenProvider;
+        migration.tokenRevocationStore = tokenRevocationStore;
+    }
+
+    @Test
+    void nothingToMigrate() {
+        Mockito.when(jwtBlackListRepository.findAllByExpiryIsNull()).thenReturn(Collections.emptyList());
+
+        migration.run();
+
+        Mockito.verify(jwtBlackListRepository, Mockito.never()).delete(Mockito.any());
+        Mockito.verifyNoInteractions(tokenRevocationStore);
+    }
+
+    @Test
+    void validTokensAreRevokedByHash() {
+        JwtBlackList valid = new JwtBlackList("valid.token", null, null);
+        JwtBlackList expired = new JwtBlackList("expired.token", null, null);
+        JwtBlackList invalid = new JwtBlackList("invalid", null, null);
+        Mockito.when(jwtBlackListRepository.findAllByExpiryIsNull()).thenReturn(Arrays.asList(valid, expired, invalid));
+        Date expiration = new Date(System.currentTimeMillis() + 3600000);
+        Mockito.when(jwtTokenProvider.getExpiration("valid.token")).thenReturn(expiration);
+        Mockito.when(jwtTokenProvider.getExpiration("expired.token")).thenReturn(new Date(System.currentTimeMillis() - 1000));
+        Mockito.when(jwtTokenProvider.getExpiration("invalid")).thenReturn(null);
+
+        migration.run();
+
+        // every row stored by the whole token goes away, only the still valid tokens are revoked again
+        Mockito.verify(jwtBlackListRepository).delete(valid);
+        Mockito.verify(jwtBlackListRepository).delete(expired);
+        Mockito.verify(jwtBlackListRepository).delete(invalid);
+        Mockito.verify(tokenRevocationStore).revoke("valid.token", new Timestamp(expiration.getTime()));
+        Mockito.verifyNoMoreInteractions(tokenRevocationStore);
+    }
+}
@@ -0,0 +1,68 @@
+package it.polito.ai.backend.security;
+
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.Jwts;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import it.polito.ai.backend.repositories.JwtBlackListRepository;
+import org.mockito.Mockito;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * the verification of a token on every request: the two signature checks made before the claims were
+ * cached, against getValidClaims with a warm cache. Run it with mvn -Pjmh -DskipTests test
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JwtTokenProviderBenchmark {
+
+    JwtTokenProvider jwtTokenProvider;
+    String secretKey;
+    String token;
+
+    @Setup
+    public void setUp() throws InvalidJwtAuthenticationException {
+        JwtBlackListRepository jwtBlackListRepository = Mockito.mock(JwtBlackListRepository.class);
+        Mockito.when(jwtBlackListRepository.findIdsByExpiryAfter(Mockito.any())).thenReturn(Collections.emptyList());
+        TokenRevocationStore tokenRevocationStore = new TokenRevocationStore();
+        tokenRevocationStore.jwtBlackListRepository = jwtBlackListRepository;
+        tokenRevocationStore.transactionTemplate = new TransactionTemplate(Mockito.mock(PlatformTransactionManager.class));
+        tokenRevocationStore.expected = 100000;
+        tokenRevocationStore.falsePositives = 0.001;
+        tokenRevocationStore.refreshSlack = Duration.ofMinutes(1);
+        tokenRevocationStore.init();
+
+        jwtTokenProvider = new JwtTokenProvider();
+        ReflectionTestUtils.setField(jwtTokenProvider, "tokenRevocationStore", tokenRevocationStore);
+        ReflectionTestUtils.setField(jwtTokenProvider, "meterRegistry", new SimpleMeterRegistry());
+        jwtTokenProvider.init();
+        secretKey = (String) ReflectionTestUtils.getField(jwtTokenProvider, "secretKey");
+        token = jwtTokenProvider.createToken("s1", Collections.singletonList("ROLE_STUDENT"));
+        // the claims are cached by the first request with the token
+        jwtTokenProvider.getValidClaims(token);
+    }
+
+    /**
+     * validateToken and getAuthentication parsed the token each
+     */
+    @Benchmark
+    public Claims verifyTwice() {
+        Jwts.parser().setSigningKey(secretKey).parseClaimsJws(token);
+        return Jwts.parser().setSigningKey(secretKey).parseClaimsJws(token).getBody();
+    }
+
+    @Benchmark
+    public Claims cachedClaims() throws InvalidJwtAuthenticationException {
+        return jwtTokenProvider.getValidClaims(token);
+    }
+}
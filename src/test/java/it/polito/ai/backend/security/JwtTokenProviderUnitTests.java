@@ -0,0 +1,118 @@
+package it.polito.ai.backend.security;
+
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.Jwts;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import it.polito.ai.backend.repositories.JwtBlackListRepository;
+import it.polito.ai.backend.repositories.UserRepository;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.userdetails.User;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UserDetailsService;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Optional;
+import java.util.stream.Collectors;
+
+public class JwtTokenProviderUnitTests {
+
+    JwtTokenProvider jwtTokenProvider;
+    UserRepository userRepository;
+    UserDetailsService userDetailsService;
+
+    @BeforeEach
+    void setUp() {
+        userRepository = Mockito.mock(UserRepository.class);
+        UserStatusCache userStatusCache = new UserStatusCache();
+        userStatusCache.userRepository = userRepository;
+        userStatusCache.meterRegistry = new SimpleMeterRegistry();
+        userStatusCache.maxSize = 100;
+        userStatusCache.expiration = Duration.ofMinutes(5);
+        userStatusCache.init();
+
+        JwtBlackListRepository jwtBlackListRepository = Mockito.mock(JwtBlackListRepository.class);
+        TokenRevocationStore tokenRevocationStore = new TokenRevocationStore();
+        tokenRevocationStore.jwtBlackListRepository = jwtBlackListRepository;
+        tokenRevocationStore.transactionTemplate = new TransactionTemplate(Mockito.mock(PlatformTransactionManager.class));
+        tokenRevocationStore.expected = 100;
+        tokenRevocationStore.falsePositives = 0.01;
+        tokenRevocationStore.refreshSlack = Duration.ofMinutes(1);
+        tokenRevocationStore.init();
+
+        userDetailsService = Mockito.mock(UserDetailsService.class);
+        jwtTokenProvider = new JwtTokenProvider();
+        ReflectionTestUtils.setField(jwtTokenProvider, "userDetailsService", userDetailsService);
+        ReflectionTestUtils.setField(jwtTokenProvider, "userStatusCache", userStatusCache);
+        ReflectionTestUtils.setField(jwtTokenProvider, "tokenRevocationStore", tokenRevocationStore);
+        ReflectionTestUtils.setField(jwtTokenProvider, "meterRegistry", new SimpleMeterRegistry());
+        jwtTokenProvider.init();
+    }
+
+    @Test
+    void authoritiesFromRolesClaim() {
+        Mockito.when(userRepository.findEnabledById("d1")).thenReturn(Optional.of(true));
+
+        Authentication authentication = jwtTokenProvider.getAuthentication(
+                jwtTokenProvider.createToken("d1", Arrays.asList("ROLE_TEACHER", "ROLE_ADMIN")));
+
+        Assertions.assertEquals("d1", ((UserDetails) authentication.getPrincipal()).getUsername());
+        Assertions.assertEquals(Arrays.asList("ROLE_TEACHER", "ROLE_ADMIN"), authentication.getAuthorities().stream()
+                .map(GrantedAuthority::getAuthority).collect(Collectors.toList()));
+        Assertions.assertTrue(authentication.isAuthenticated());
+        Mockito.verify(userDetailsService, Mockito.never()).loadUserByUsername(Mockito.any());
+    }
+
+    @Test
+    void disabledAccountRejected() {
+        Mockito.when(userRepository.findEnabledById("s1")).thenReturn(Optional.of(false));
+
+        Assertions.assertThrows(UsernameNotFoundException.class, () -> jwtTokenProvider.getAuthentication(claims("s1", "ROLE_STUDENT")));
+    }
+
+    @Test
+    void deletedAccountRejected() {
+        Mockito.when(userRepository.findEnabledById("s1")).thenReturn(Optional.empty());
+
+        Assertions.assertThrows(UsernameNotFoundException.class, () -> jwtTokenProvider.getAuthentication(claims("s1", "ROLE_STUDENT")));
+    }
+
+    @Test
+    void tokenWithoutRolesLoadsUser() {
+        Mockito.when(userDetailsService.loadUserByUsername("s1")).thenReturn(
+                new User("s1", "password", Collections.singletonList(new SimpleGrantedAuthority("ROLE_STUDENT"))));
+
+        Authentication authentication = jwtTokenProvider.getAuthentication(Jwts.claims().setSubject("s1"));
+
+        Assertions.assertEquals("s1", ((UserDetails) authentication.getPrincipal()).getUsername());
+        Assertions.assertEquals(Collections.singletonList("ROLE_STUDENT"), authentication.getAuthorities().stream()
+                .map(GrantedAuthority::getAuthority).collect(Collectors.toList()));
+        Mockito.verify(userRepository, Mockito.never()).findEnabledById(Mockito.any());
+    }
+
+    @Test
+    void statefulModeLoadsUser() {
+        ReflectionTestUtils.setField(jwtTokenProvider, "stateless", false);
+        Mockito.when(userDetailsService.loadUserByUsername("s1")).thenThrow(new UsernameNotFoundException("s1"));
+
+        Assertions.assertThrows(UsernameNotFoundException.class, () -> jwtTokenProvider.getAuthentication(claims("s1", "ROLE_STUDENT")));
+        Mockito.verify(userRepository, Mockito.never()).findEnabledById(Mockito.any());
+    }
+
+    private static Claims claims(String userId, String role) {
+        Claims claims = Jwts.claims().setSubject(userId);
+        claims.put("roles", Collections.singletonList(role));
+        return claims;
+    }
+}
@@ -0,0 +1,290 @@
+package it.polito.ai.backend.security;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import it.polito.ai.backend.entities.Course;
+import it.polito.ai.backend.entities.Student;
+import it.polito.ai.backend.entities.Team;
+import it.polito.ai.backend.entities.VirtualMachineModel;
+import it.polito.ai.backend.repositories.*;
+import org.hibernate.collection.internal.PersistentBag;
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Optional;
+
+public class MembershipIndexUnitTests {
+
+    MembershipIndex index;
+    MembershipInterceptor interceptor;
+    CourseRepository courseRepository;
+    TeamRepository teamRepository;
+    AssignmentRepository assignmentRepository;
+
+    @BeforeEach
+    void setUp() {
+        courseRepository = Mockito.mock(CourseRepository.class);
+        teamRepository = Mockito.mock(TeamRepository.class);
+        assignmentRepository = Mockito.mock(AssignmentRepository.class);
+        interceptor = new MembershipInterceptor();
+
+        index = new MembershipIndex();
+        index.courseRepository = courseRepository;
+        index.teamRepository = teamRepository;
+        index.virtualMachineRepository = Mockito.mock(VirtualMachineRepository.class);
+        index.assignmentRepository = assignmentRepository;
+        index.membershipInterceptor = interceptor;
+        index.transactionTemplate = new TransactionTemplate(Mockito.mock(PlatformTransactionManager.class));
+        index.meterRegistry = new SimpleMeterRegistry();
+        index.init();
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    void removedMemberFailsOnceCommitted() {
+        Mockito.when(courseRepository.findStudentIdsById("c1")).thenReturn(Collections.singletonList("S1"));
+        Assertions.assertTrue(index.isStudentOf("c1", "s1"));
+
+        Mockito.when(courseRepository.findStudentIdsById("c1")).thenReturn(Collections.emptyList());
+        commit(TransactionSynchronization.STATUS_COMMITTED, () -> interceptor.onCollectionUpdate(courses("s1"), "s1"));
+
+        Assertions.assertFalse(index.isStudentOf("c1", "s1"));
+    }
+
+    @Test
+    void rolledBackChangeKeepsIndex() {
+        Mockito.when(courseRepository.findStudentIdsById("c1")).thenReturn(Collections.singletonList("s1"));
+        Assertions.assertTrue(index.isStudentOf("c1", "s1"));
+
+        commit(TransactionSynchronization.STATUS_ROLLED_BACK, () -> interceptor.onCollectionUpdate(courses("s1"), "s1"));
+
+        Assertions.assertTrue(index.isStudentOf("c1", "s1"));
+        Mockito.verify(courseRepository, Mockito.times(1)).findStudentIdsById("c1");
+    }
+
+    @Test
+    void changeOutsideTransactionDropsAtOnce() {
+        Mockito.when(courseRepository.findStudentIdsById("c1")).thenReturn(Collections.singletonList("s1"));
+        Assertions.assertTrue(index.isStudentOf("c1", "s1"));
+
+        // a student deleted without loading the courses
+        PersistentBag courses = new PersistentBag((SharedSessionContractImplementor) null);
+        courses.setSnapshot("s1", Student.class.getName() + ".courses", null);
+        interceptor.onCollectionRemove(courses, "s1");
+
+        Assertions.assertTrue(index.isStudentOf("c1", "s1"));
+        Mockito.verify(courseRepository, Mockito.times(2)).findStudentIdsById("c1");
+    }
+
+    @Test
+    void joiningCourseKeepsOtherCourses() {
+        Mockito.when(courseRepository.findStudentIdsById("c1")).thenReturn(Collections.singletonList("s1"));
+        Mockito.when(courseRepository.findStudentIdsById("c2")).thenReturn(Collections.singletonList("s2"));
+        Assertions.assertFalse(index.isStudentOf("c1", "s3"));
+        Assertions.assertTrue(index.isStudentOf("c2", "s2"));
+
+        Mockito.when(courseRepository.findStudentIdsById("c1")).thenReturn(Arrays.asList("s1", "s3"));
+        commit(TransactionSynchronization.STATUS_COMMITTED, () -> interceptor.onCollectionUpdate(courses("s3", "c1"), "s3"));
+
+        Assertions.assertTrue(index.isStudentOf("c1", "s3"));
+        Assertions.assertTrue(index.isStudentOf("c2", "s2"));
+        Mockito.verify(courseRepository, Mockito.times(2)).findStudentIdsById("c1");
+        Mockito.verify(courseRepository, Mockito.times(1)).findStudentIdsById("c2");
+    }
+
+    @Test
+    void newTeamKeepsCoursesAndOtherTeams() {
+        Mockito.when(courseRepository.findStudentIdsById("c1")).thenReturn(Collections.singletonList("s1"));
+        Mockito.when(teamRepository.findMemberIdsById(1L)).thenReturn(Collections.singletonList("s1"));
+        Assertions.assertTrue(index.isStudentOf("c1", "s1"));
+        Assertions.assertTrue(index.isMemberOf(1L, "s1"));
+
+        Team team = new Team();
+        team.setId(2L);
+        commit(TransactionSynchronization.STATUS_COMMITTED, () -> {
+            interceptor.onSave(team, 2L, new Object[]{null}, new String[]{"configuration"}, null);
+            interceptor.onCollectionRecreate(members(2L), 2L);
+        });
+
+        Assertions.assertTrue(index.isStudentOf("c1", "s1"));
+        Assertions.assertTrue(index.isMemberOf(1L, "s1"));
+        Mockito.verify(courseRepository, Mockito.times(1)).findStudentIdsById("c1");
+        Mockito.verify(teamRepository, Mockito.times(1)).findMemberIdsById(1L);
+    }
+
+    @Test
+    void courseChangeDropsItsModelsOnly() {
+        Mockito.when(courseRepository.findIdByVirtualMachineModelId(Mockito.anyLong())).thenReturn(Optional.of("c1"));
+        index.getCourseOfModel(3L);
+        index.getCourseOfModel(4L);
+        index.getCourseOfModel(5L);
+
+        VirtualMachineModel previous = new VirtualMachineModel();
+        previous.setId(3L);
+        VirtualMachineModel current = new VirtualMachineModel();
+        current.setId(4L);
+        commit(TransactionSynchronization.STATUS_COMMITTED, () -> interceptor.onFlushDirty(new Course(), "c1",
+                new Object[]{current}, new Object[]{previous}, new String[]{"virtualMachineModel"}, null));
+        index.getCourseOfModel(3L);
+        index.getCourseOfModel(4L);
+        index.getCourseOfModel(5L);
+
+        Mockito.verify(courseRepository, Mockito.times(2)).findIdByVirtualMachineModelId(3L);
+        Mockito.verify(courseRepository, Mockito.times(2)).findIdByVirtualMachineModelId(4L);
+        Mockito.verify(courseRepository, Mockito.times(1)).findIdByVirtualMachineModelId(5L);
+    }
+
+    @Test
+    void reloadReplacesWarmedEntries() {
+        Mockito.when(courseRepository.findAllIds()).thenReturn(Arrays.asList("c1", "c2"));
+        Mockito.when(courseRepository.findAllStudentIds()).thenReturn(Collections.singletonList(membership("c1", "s1")));
+        index.run();
+        Assertions.assertTrue(index.isStudentOf("c1", "s1"));
+
+        // changed by sql: s1 left c1 and c2 was deleted
+        Mockito.when(courseRepository.findAllIds()).thenReturn(Collections.singletonList("c1"));
+        Mockito.when(courseRepository.findAllStudentIds()).thenReturn(Collections.emptyList());
+        Mockito.when(courseRepository.findTeacherIdsById("c2")).thenReturn(Collections.emptyList());
+        index.reload();
+
+        Assertions.assertFalse(index.isStudentOf("c1", "s1"));
+        Mockito.verify(courseRepository, Mockito.never()).findStudentIdsById("c1");
+        Assertions.assertFalse(index.isStudentOf("c2", "s1"));
+        Mockito.verify(courseRepository, Mockito.times(1)).findStudentIdsById("c2");
+    }
+
+    @Test
+    void loadRacingInvalidationIsNotKept() {
+        // the members are read, then a change commits before the value is cached
+        Mockito.when(courseRepository.findStudentIdsById("c1")).thenAnswer(invocation -> {
+            index.invalidate(EnumSet.of(MembershipIndex.Relation.COURSE));
+            return Collections.singletonList("s1");
+        });
+        Assertions.assertTrue(index.isStudentOf("c1", "s1"));
+
+        Mockito.when(courseRepository.findStudentIdsById("c1")).thenReturn(Collections.emptyList());
+        Assertions.assertFalse(index.isStudentOf("c1", "s1"));
+    }
+
+    @Test
+    void warmUpLoadsCoursesTeamsAndAssignments() {
+        Mockito.when(courseRepository.findAllIds()).thenReturn(Arrays.asList("c1", "c2"));
+        Mockito.when(courseRepository.findAllStudentIds()).thenReturn(Collections.singletonList(membership("c1", "S1")));
+        Mockito.when(courseRepository.findAllTeacherIds()).thenReturn(Collections.singletonList(membership("c2", "d1")));
+        Mockito.when(teamRepository.findAllCourseIds()).thenReturn(Collections.singletonList(membership(1L, "c1")));
+        Mockito.when(teamRepository.findAllMemberIds()).thenReturn(Collections.singletonList(membership(1L, "s1")));
+        Mockito.when(assignmentRepository.findAllCourseIds()).thenReturn(Collections.singletonList(membership(7L, "c2")));
+
+        index.run();
+
+        Assertions.assertTrue(index.isStudentOf("c1", "s1"));
+        Assertions.assertFalse(index.isTeacherOf("c1", "d1"));
+        Assertions.assertTrue(index.isTeacherOf("c2", "d1"));
+        Assertions.assertFalse(index.isStudentOf("c2", "s1"));
+        Assertions.assertTrue(index.isMemberOf(1L, "s1"));
+        Assertions.assertEquals("c1", index.getCourseOfTeam(1L));
+        Assertions.assertEquals("c2", index.getCourseOfAssignment(7L));
+        Mockito.verify(courseRepository, Mockito.never()).findStudentIdsById(Mockito.any());
+        Mockito.verify(courseRepository, Mockito.never()).findTeacherIdsById(Mockito.any());
+        Mockito.verify(teamRepository, Mockito.never()).findMemberIdsById(Mockito.any());
+        Mockito.verify(assignmentRepository, Mockito.never()).findCourseIdById(Mockito.any());
+    }
+
+    @Test
+    void warmUpRacingInvalidationLoadsAgain() {
+        Mockito.when(courseRepository.findAllIds()).thenAnswer(invocation -> {
+            index.invalidate(EnumSet.of(MembershipIndex.Relation.COURSE));
+            return Collections.singletonList("c1");
+        }).thenReturn(Collections.singletonList("c1"));
+        Mockito.when(courseRepository.findAllStudentIds())
+                .thenReturn(Collections.singletonList(membership("c1", "s1")))
+                .thenReturn(Collections.emptyList());
+
+        index.run();
+
+        Assertions.assertFalse(index.isStudentOf("c1", "s1"));
+        Mockito.verify(courseRepository, Mockito.never()).findStudentIdsById(Mockito.any());
+    }
+
+    @Test
+    void warmUpRacingInvalidationIsNotKept() {
+        Mockito.when(courseRepository.findAllIds()).thenAnswer(invocation -> {
+            index.invalidate(EnumSet.of(MembershipIndex.Relation.COURSE));
+            return Collections.singletonList("c1");
+        });
+        Mockito.when(courseRepository.findAllStudentIds()).thenReturn(Collections.singletonList(membership("c1", "s1")));
+        Mockito.when(courseRepository.findStudentIdsById("c1")).thenReturn(Collections.emptyList());
+
+        index.run();
+
+        Assertions.assertFalse(index.isStudentOf("c1", "s1"));
+    }
+
+    /**
+     * a transaction making the changes, completed with the given status
+     */
+    private void commit(int status, Runnable changes) {
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            changes.run();
+            for (TransactionSynchronization synchronization : TransactionSynchronizationManager.getSynchronizations()) {
+                synchronization.afterCompletion(status);
+            }
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    /**
+     * the courses of a student, as loaded and changed in a session
+     */
+    private static PersistentBag courses(String studentId, String... courseIds) {
+        List<Course> courses = new ArrayList<>();
+        for (String courseId : courseIds) {
+            Course course = new Course();
+            course.setId(courseId);
+            courses.add(course);
+        }
+        PersistentBag bag = new PersistentBag((SharedSessionContractImplementor) null, courses);
+        bag.setSnapshot(studentId, Student.class.getName() + ".courses", new ArrayList<>());
+        return bag;
+    }
+
+    private static PersistentBag members(Long teamId) {
+        PersistentBag bag = new PersistentBag((SharedSessionContractImplementor) null, new ArrayList<>());
+        bag.setSnapshot(teamId, Team.class.getName() + ".members", new ArrayList<>());
+        return bag;
+    }
+
+    private static <K> Membership<K> membership(K id, String member) {
+        return new Membership<K>() {
+            @Override
+            public K getId() {
+                return id;
+            }
+
+            @Override
+            public String getMember() {
+                return member;
+            }
+        };
+    }
+}
@@ -0,0 +1,61 @@
+package it.polito.ai.backend.security;
+
+import it.polito.ai.backend.repositories.JwtBlackListRepository;
+import it.polito.ai.backend.services.Utils;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.util.Collections;
+
+public class TokenRevocationStoreUnitTests {
+
+    TokenRevocationStore store;
+    JwtBlackListRepository jwtBlackListRepository;
+
+    @BeforeEach
+    void setUp() {
+        jwtBlackListRepository = Mockito.mock(JwtBlackListRepository.class);
+        store = new TokenRevocationStore();
+        store.jwtBlackListRepository = jwtBlackListRepository;
+        store.transactionTemplate = new TransactionTemplate(Mockito.mock(PlatformTransactionManager.class));
+        store.expected = 1000;
+        store.falsePositives = 0.001;
+        store.refreshSlack = Duration.ofMinutes(1);
+        store.init();
+    }
+
+    @Test
+    void refreshSeesRevocationsOfOtherInstances() {
+        String id = Utils.toHex(TokenRevocationStore.digest("a.b.c"));
+        Assertions.assertFalse(store.isRevoked("a.b.c"));
+        Mockito.verify(jwtBlackListRepository, Mockito.never()).existsById(Mockito.any());
+
+        // stored by another instance, this filter does not know it yet
+        Mockito.when(jwtBlackListRepository.findIdsByRevokedSince(Mockito.any(), Mockito.any())).thenReturn(Collections.singletonList(id));
+        Mockito.when(jwtBlackListRepository.existsById(id)).thenReturn(true);
+        Assertions.assertEquals(1, store.refresh());
+
+        Assertions.assertTrue(store.isRevoked("a.b.c"));
+    }
+
+    @Test
+    void refreshLooksBackFromLastLoad() {
+        Mockito.when(jwtBlackListRepository.findIdsByRevokedSince(Mockito.any(), Mockito.any())).thenReturn(Collections.emptyList());
+        long before = System.currentTimeMillis();
+        store.refresh();
+        store.refresh();
+
+        // the second refresh starts from the first one, minus the slack
+        ArgumentCaptor<Timestamp> since = ArgumentCaptor.forClass(Timestamp.class);
+        Mockito.verify(jwtBlackListRepository, Mockito.times(2)).findIdsByRevokedSince(since.capture(), Mockito.any());
+        long second = since.getAllValues().get(1).getTime();
+        Assertions.assertTrue(second >= before - 60000 && second <= System.currentTimeMillis() - 60000);
+    }
+}
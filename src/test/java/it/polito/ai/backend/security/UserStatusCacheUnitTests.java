@@ -0,0 +1,94 @@
+package it.polito.ai.backend.security;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import it.polito.ai.backend.repositories.UserRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.Optional;
+
+public class UserStatusCacheUnitTests {
+
+    UserStatusCache userStatusCache;
+    UserRepository userRepository;
+
+    @BeforeEach
+    void setUp() {
+        userRepository = Mockito.mock(UserRepository.class);
+        userStatusCache = new UserStatusCache();
+        userStatusCache.userRepository = userRepository;
+        userStatusCache.meterRegistry = new SimpleMeterRegistry();
+        userStatusCache.maxSize = 100;
+        userStatusCache.expiration = Duration.ofMinutes(5);
+        userStatusCache.init();
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    void statusIsCached() {
+        Mockito.when(userRepository.findEnabledById("s1")).thenReturn(Optional.of(true));
+
+        Assertions.assertTrue(userStatusCache.isEnabled("s1"));
+        Assertions.assertTrue(userStatusCache.isEnabled("s1"));
+
+        Mockito.verify(userRepository, Mockito.times(1)).findEnabledById("s1");
+    }
+
+    @Test
+    void evictTakesEffectAfterCommit() {
+        Mockito.when(userRepository.findEnabledById("s1")).thenReturn(Optional.of(true));
+        Assertions.assertTrue(userStatusCache.isEnabled("s1"));
+
+        // the account is deleted in a transaction
+        Mockito.when(userRepository.findEnabledById("s1")).thenReturn(Optional.empty());
+        TransactionSynchronizationManager.initSynchronization();
+        userStatusCache.evict("s1");
+        // a request in between still sees the committed status
+        Assertions.assertTrue(userStatusCache.isEnabled("s1"));
+        for (TransactionSynchronization synchronization : TransactionSynchronizationManager.getSynchronizations()) {
+            synchronization.afterCommit();
+        }
+        TransactionSynchronizationManager.clearSynchronization();
+
+        Assertions.assertFalse(userStatusCache.isEnabled("s1"));
+    }
+
+    @Test
+    void evictRolledBackKeepsStatus() {
+        Mockito.when(userRepository.findEnabledById("s1")).thenReturn(Optional.of(true));
+        Assertions.assertTrue(userStatusCache.isEnabled("s1"));
+
+        TransactionSynchronizationManager.initSynchronization();
+        userStatusCache.evict("s1");
+        for (TransactionSynchronization synchronization : TransactionSynchronizationManager.getSynchronizations()) {
+            synchronization.afterCompletion(TransactionSynchronization.STATUS_ROLLED_BACK);
+        }
+        TransactionSynchronizationManager.clearSynchronization();
+
+        Assertions.assertTrue(userStatusCache.isEnabled("s1"));
+        Mockito.verify(userRepository, Mockito.times(1)).findEnabledById("s1");
+    }
+
+    @Test
+    void evictOutsideTransactionTakesEffectAtOnce() {
+        Mockito.when(userRepository.findEnabledById("s1")).thenReturn(Optional.of(false));
+        Assertions.assertFalse(userStatusCache.isEnabled("s1"));
+
+        Mockito.when(userRepository.findEnabledById("s1")).thenReturn(Optional.of(true));
+        userStatusCache.evict("s1");
+
+        Assertions.assertTrue(userStatusCache.isEnabled("s1"));
+    }
+}
@@ -0,0 +1,201 @@
+package it.polito.ai.backend.services.assignment;
+
+import it.polito.ai.backend.dtos.PaperReviewRequest;
+import it.polito.ai.backend.dtos.PaperReviewResult;
+import it.polito.ai.backend.dtos.PaperStatus;
+import it.polito.ai.backend.entities.*;
+import it.polito.ai.backend.repositories.*;
+import it.polito.ai.backend.services.image.ImageService;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.SpyBean;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.web.multipart.MultipartFile;
+
+import javax.imageio.ImageIO;
+import javax.persistence.EntityManager;
+import javax.transaction.Transactional;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+import java.util.*;
+import java.util.stream.Collectors;
+
+@SpringBootTest
+@Transactional
+@ActiveProfiles("dev")
+@WithMockUser(username = "review-d1", roles = "TEACHER")
+public class AssignmentServiceReviewIntegrationTests {
+
+    @Autowired
+    AssignmentService assignmentService;
+    @Autowired
+    LatestPaperRepository latestPaperRepository;
+    @Autowired
+    PaperRepository paperRepository;
+    @Autowired
+    AssignmentRepository assignmentRepository;
+    @Autowired
+    CourseRepository courseRepository;
+    @Autowired
+    StudentRepository studentRepository;
+    @Autowired
+    TeacherRepository teacherRepository;
+    @Autowired
+    EntityManager entityManager;
+    @SpyBean
+    ImageService imageService;
+
+    Assignment assignment;
+    Image delivered;
+    Map<String, MultipartFile> images = new HashMap<>();
+
+    @BeforeEach
+    void setUp() throws IOException {
+        Course course = new Course();
+        course.setId("review-course");
+        course.setName("review course");
+        course.setMin(1);
+        course.setMax(5);
+        course = courseRepository.save(course);
+        Teacher teacher = new Teacher();
+        teacher.setId("review-d1");
+        teacher.setFirstName("first");
+        teacher.setLastName("last");
+        teacher.addCourse(course);
+        teacherRepository.save(teacher);
+
+        assignment = new Assignment();
+        assignment.setCourse(course);
+        assignment.setPublished(new Timestamp(System.currentTimeMillis() - 3600000));
+        assignment.setExpired(new Timestamp(System.currentTimeMillis() + 3600000));
+        assignment = assignmentRepository.save(assignment);
+
+        delivered = Image.builder().id("review-delivered").size(1).contentType("image/png").build();
+        entityManager.persist(delivered);
+        // the students delivered a paper, review-s4 never did
+        for (String studentId : Arrays.asList("review-s1", "review-s2", "review-s3", "review-s5", "review-s6", "review-s7", "review-s8")) {
+            Paper paper = new Paper();
+            paper.setStudent(studentRepository.save(student(studentId)));
+            paper.setAssignment(assignment);
+            paper.setPublished(new Timestamp(System.currentTimeMillis() - 60000));
+            paper.setStatus(PaperStatus.DELIVERED);
+            paper.setImage(delivered);
+            latestPaperRepository.moveTo(paperRepository.save(paper));
+        }
+        studentRepository.save(student("review-s4"));
+        entityManager.flush();
+
+        images.put("good", new MockMultipartFile("good", "good.png", "image/png", png()));
+        images.put("bad", new MockMultipartFile("bad", "bad.png", "image/png", "not an image".getBytes(StandardCharsets.US_ASCII)));
+    }
+
+    @Test
+    void everyEntryGetsItsOwnStatus() {
+        List<PaperReviewResult> results = assignmentService.reviewPapers(assignment.getId(), Arrays.asList(
+                review("review-s1", "30", null),
+                review("review-s2", "28", "good"),
+                review("review-s1", "18", null),
+                review("review-s4", "25", null),
+                review("review-s5", null, null),
+                review("review-s6", "24", "missing"),
+                review("review-s7", "22", "bad")), images);
+
+        Assertions.assertEquals(Arrays.asList(201, 201, 409, 404, 400, 400, 415),
+                results.stream().map(PaperReviewResult::getStatus).collect(Collectors.toList()));
+        Assertions.assertEquals(Arrays.asList("review-s1", "review-s2", "review-s1", "review-s4", "review-s5", "review-s6", "review-s7"),
+                results.stream().map(PaperReviewResult::getStudentId).collect(Collectors.toList()));
+        for (PaperReviewResult result : results) {
+            Assertions.assertEquals(result.getStatus() == 201, result.getPaperId() != null);
+            Assertions.assertEquals(result.getStatus() == 201, result.getMessage() == null);
+        }
+    }
+
+    @Test
+    void rejectedPartFailsOnlyTheEntriesNamingIt() {
+        List<PaperReviewResult> results = assignmentService.reviewPapers(assignment.getId(), Arrays.asList(
+                review("review-s1", "30", "bad"),
+                review("review-s2", "28", "good"),
+                review("review-s3", "27", "bad"),
+                review("review-s5", "26", null)), images);
+
+        Assertions.assertEquals(Arrays.asList(415, 201, 415, 201),
+                results.stream().map(PaperReviewResult::getStatus).collect(Collectors.toList()));
+        Assertions.assertEquals(PaperStatus.DELIVERED, latest("review-s1").getStatus());
+        Assertions.assertEquals(PaperStatus.DELIVERED, latest("review-s3").getStatus());
+    }
+
+    @Test
+    void imagesAreRetainedOncePerImage() {
+        List<PaperReviewResult> results = assignmentService.reviewPapers(assignment.getId(), Arrays.asList(
+                review("review-s1", "30", null),
+                review("review-s2", "28", "good"),
+                review("review-s3", "27", "good"),
+                review("review-s5", "26", null),
+                review("review-s6", "24", null)), images);
+        Assertions.assertTrue(results.stream().allMatch(r -> r.getStatus() == 201));
+
+        String revised = latest("review-s2").getImage().getId();
+        Assertions.assertEquals(revised, latest("review-s3").getImage().getId());
+        Mockito.verify(imageService).retain(delivered.getId(), 3);
+        Mockito.verify(imageService).retain(revised, 2);
+        Mockito.verify(imageService, Mockito.times(2)).retain(Mockito.anyString(), Mockito.anyInt());
+    }
+
+    @Test
+    void latestPaperMovesToTheRevisedPaper() {
+        List<PaperReviewResult> results = assignmentService.reviewPapers(assignment.getId(), Arrays.asList(
+                review("review-s1", "30", null),
+                review("review-s2", "28", "good")), images);
+        entityManager.flush();
+        entityManager.clear();
+
+        for (PaperReviewResult result : results) {
+            Paper latest = latest(result.getStudentId());
+            Assertions.assertEquals(result.getPaperId(), latest.getId());
+            Assertions.assertEquals(PaperStatus.REVISED, latest.getStatus());
+        }
+        Assertions.assertEquals("30", latest("review-s1").getScore());
+        // no image named, the delivered one is kept
+        Assertions.assertEquals(delivered.getId(), latest("review-s1").getImage().getId());
+        Assertions.assertNotEquals(delivered.getId(), latest("review-s2").getImage().getId());
+        Assertions.assertEquals(PaperStatus.DELIVERED, latest("review-s3").getStatus());
+    }
+
+    private Paper latest(String studentId) {
+        return latestPaperRepository.findPaper(studentId, assignment.getId()).orElseThrow(IllegalStateException::new);
+    }
+
+    private static PaperReviewRequest review(String studentId, String score, String image) {
+        PaperReviewRequest review = new PaperReviewRequest();
+        review.setStudentId(studentId);
+        review.setScore(score);
+        review.setImage(image);
+        return review;
+    }
+
+    private static Student student(String id) {
+        Student student = new Student();
+        student.setId(id);
+        student.setFirstName("first");
+        student.setLastName("last");
+        student.setEmail(id + "@studenti.polito.it");
+        return student;
+    }
+
+    private static byte[] png() throws IOException {
+        BufferedImage image = new BufferedImage(8, 8, BufferedImage.TYPE_INT_RGB);
+        image.setRGB(1, 1, 0xff0000);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(image, "png", out);
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,193 @@
+package it.polito.ai.backend.services.assignment;
+
+import it.polito.ai.backend.dtos.PaperStatus;
+import it.polito.ai.backend.entities.*;
+import it.polito.ai.backend.repositories.*;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.AdditionalAnswers;
+import org.mockito.Mockito;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import javax.persistence.EntityManager;
+import javax.transaction.Transactional;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+@SpringBootTest
+@Transactional
+@ActiveProfiles("dev")
+public class ExpiredAssignmentSweeperIntegrationTests {
+
+    @Autowired
+    ExpiredAssignmentSweeper sweeper;
+    @Autowired
+    LatestPaperRepository latestPaperRepository;
+    @Autowired
+    PaperRepository paperRepository;
+    @Autowired
+    AssignmentRepository assignmentRepository;
+    @Autowired
+    CourseRepository courseRepository;
+    @Autowired
+    StudentRepository studentRepository;
+    @Autowired
+    WatermarkRepository watermarkRepository;
+    @Autowired
+    EntityManager entityManager;
+
+    Course course;
+    List<Student> students = new ArrayList<>();
+    /**
+     * expiration shared by all the assignments, so they are told apart only by the id
+     */
+    Timestamp expired;
+    int chunkSize;
+
+    @BeforeEach
+    void setUp() {
+        chunkSize = sweeper.chunkSize;
+        sweeper.chunkSize = 1;
+        course = new Course();
+        course.setId("sweeper-course");
+        course.setName("sweeper course");
+        course.setMin(1);
+        course.setMax(5);
+        course = courseRepository.save(course);
+        for (int i = 0; i < 2; i++) {
+            Student student = new Student();
+            student.setId("sweeper-s" + i);
+            student.setFirstName("first");
+            student.setLastName("last");
+            student.setEmail("sweeper-s" + i + "@studenti.polito.it");
+            students.add(studentRepository.save(student));
+        }
+        long now = System.currentTimeMillis();
+        expired = new Timestamp(now - now % 1000 - 60000);
+        // only the assignments of the test are after the watermark
+        watermarkRepository.save(new Watermark("expired-assignments", new Timestamp(expired.getTime() - 1000), 0L));
+    }
+
+    @AfterEach
+    void tearDown() {
+        sweeper.chunkSize = chunkSize;
+        sweeper.latestPaperRepository = latestPaperRepository;
+    }
+
+    @Test
+    void tiesOnExpirationAreSweptInIdOrder() {
+        List<Assignment> assignments = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            assignments.add(assignmentWithReadPapers());
+        }
+
+        Assertions.assertEquals(3 * students.size(), sweeper.sweep());
+
+        Watermark watermark = watermarkRepository.findById("expired-assignments").orElseThrow(IllegalStateException::new);
+        Assertions.assertEquals(expired, watermark.getTimestamp());
+        Assertions.assertEquals(assignments.get(2).getId(), watermark.getLastId());
+        for (Assignment assignment : assignments) {
+            assertDeliveredOnce(assignment);
+        }
+    }
+
+    @Test
+    void resumesAfterFailedChunk() {
+        List<Assignment> assignments = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            assignments.add(assignmentWithReadPapers());
+        }
+        // the second chunk fails before writing anything, as if it was rolled back
+        AtomicInteger chunks = new AtomicInteger();
+        LatestPaperRepository failing = Mockito.mock(LatestPaperRepository.class, AdditionalAnswers.delegatesTo(latestPaperRepository));
+        Mockito.doAnswer(invocation -> {
+            if (chunks.incrementAndGet() == 2) {
+                throw new IllegalStateException("chunk failed");
+            }
+            return latestPaperRepository.findForUpdateByAssignmentIn(invocation.<Collection<Long>>getArgument(0));
+        }).when(failing).findForUpdateByAssignmentIn(Mockito.any());
+        sweeper.latestPaperRepository = failing;
+
+        Assertions.assertThrows(IllegalStateException.class, () -> sweeper.sweep());
+        Watermark watermark = watermarkRepository.findById("expired-assignments").orElseThrow(IllegalStateException::new);
+        Assertions.assertEquals(assignments.get(0).getId(), watermark.getLastId());
+        assertDeliveredOnce(assignments.get(0));
+        Assertions.assertEquals(0, countDelivered(assignments.get(1)));
+
+        sweeper.latestPaperRepository = latestPaperRepository;
+        Assertions.assertEquals(2 * students.size(), sweeper.sweep());
+        for (Assignment assignment : assignments) {
+            assertDeliveredOnce(assignment);
+        }
+    }
+
+    @Test
+    void deliversEachPaperOnce() {
+        sweeper.chunkSize = 2;
+        Assignment read = assignmentWithReadPapers();
+        Assignment delivered = assignment();
+        for (Student student : students) {
+            paper(student, delivered, PaperStatus.DELIVERED, false);
+        }
+        Assignment unflagged = assignment();
+        for (Student student : students) {
+            paper(student, unflagged, PaperStatus.NULL, false);
+        }
+
+        Assertions.assertEquals(students.size(), sweeper.sweep());
+        // nothing left after the watermark, a second sweep delivers nothing again
+        Assertions.assertEquals(0, sweeper.sweep());
+
+        assertDeliveredOnce(read);
+        assertDeliveredOnce(delivered);
+        Assertions.assertEquals(0, countDelivered(unflagged));
+    }
+
+    private Assignment assignment() {
+        Assignment assignment = new Assignment();
+        assignment.setCourse(course);
+        assignment.setPublished(new Timestamp(expired.getTime() - 3600000));
+        assignment.setExpired(expired);
+        return assignmentRepository.save(assignment);
+    }
+
+    /**
+     * an assignment whose students have read it and uploaded a paper, which is still to be delivered
+     */
+    private Assignment assignmentWithReadPapers() {
+        Assignment assignment = assignment();
+        for (Student student : students) {
+            paper(student, assignment, PaperStatus.READ, true);
+        }
+        return assignment;
+    }
+
+    private void paper(Student student, Assignment assignment, PaperStatus status, boolean flag) {
+        Paper paper = Paper.detached(assignment.getPublished(), status, flag, null, student, assignment);
+        paperRepository.save(paper);
+        latestPaperRepository.moveTo(paper);
+    }
+
+    private void assertDeliveredOnce(Assignment assignment) {
+        Assertions.assertEquals(students.size(), countDelivered(assignment));
+        for (Student student : students) {
+            Paper latest = latestPaperRepository.findPaper(student.getId(), assignment.getId()).orElseThrow(IllegalStateException::new);
+            Assertions.assertEquals(PaperStatus.DELIVERED, latest.getStatus());
+            Assertions.assertFalse(latest.isFlag());
+        }
+    }
+
+    private long countDelivered(Assignment assignment) {
+        return entityManager.createQuery("select count(p) from Paper p where p.assignment.id=:assignmentId and p.status=:status", Long.class)
+                .setParameter("assignmentId", assignment.getId())
+                .setParameter("status", PaperStatus.DELIVERED)
+                .getSingleResult();
+    }
+}
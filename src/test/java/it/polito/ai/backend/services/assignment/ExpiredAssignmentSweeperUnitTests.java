@@ -0,0 +1,39 @@
+package it.polito.ai.backend.services.assignment;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class ExpiredAssignmentSweeperUnitTests {
+
+    @Test
+    void deadlinesFiringDuringSweepAskForOneMorePass() {
+        ExpiredAssignmentSweeper sweeper = Mockito.spy(new ExpiredAssignmentSweeper());
+        AtomicInteger sweeps = new AtomicInteger();
+        Mockito.doAnswer(invocation -> {
+            if (sweeps.incrementAndGet() == 1) {
+                // the deadlines of the assignments expired together fire while the first sweep runs
+                sweeper.expire("2");
+                sweeper.expire("3");
+            }
+            return 0;
+        }).when(sweeper).sweep();
+
+        sweeper.expire("1");
+
+        Assertions.assertEquals(2, sweeps.get());
+    }
+
+    @Test
+    void failedSweepDoesNotBlockTheNextDeadline() {
+        ExpiredAssignmentSweeper sweeper = Mockito.spy(new ExpiredAssignmentSweeper());
+        Mockito.doThrow(new IllegalStateException("lock wait timeout")).doReturn(0).when(sweeper).sweep();
+
+        Assertions.assertThrows(IllegalStateException.class, () -> sweeper.expire("1"));
+        sweeper.expire("2");
+
+        Mockito.verify(sweeper, Mockito.times(2)).sweep();
+    }
+}
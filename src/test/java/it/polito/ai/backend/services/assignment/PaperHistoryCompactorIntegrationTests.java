@@ -0,0 +1,104 @@
+package it.polito.ai.backend.services.assignment;
+
+import it.polito.ai.backend.dtos.PaperStatus;
+import it.polito.ai.backend.entities.*;
+import it.polito.ai.backend.repositories.*;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import javax.persistence.EntityManager;
+import javax.transaction.Transactional;
+import java.sql.Timestamp;
+import java.time.Duration;
+
+@SpringBootTest
+@Transactional
+@ActiveProfiles("dev")
+public class PaperHistoryCompactorIntegrationTests {
+
+    @Autowired
+    PaperHistoryCompactor compactor;
+    @Autowired
+    PaperRepository paperRepository;
+    @Autowired
+    LatestPaperRepository latestPaperRepository;
+    @Autowired
+    AssignmentRepository assignmentRepository;
+    @Autowired
+    StudentRepository studentRepository;
+    @Autowired
+    WatermarkRepository watermarkRepository;
+    @Autowired
+    EntityManager entityManager;
+
+    Image image;
+    Assignment assignment;
+    Duration retention;
+    int chunkSize;
+
+    @BeforeEach
+    void setUp() {
+        retention = compactor.retention;
+        chunkSize = compactor.chunkSize;
+        compactor.retention = Duration.ZERO;
+        compactor.chunkSize = 1;
+        image = Image.builder().id("compactor-image").refCount(10).build();
+        entityManager.persist(image);
+        assignment = assignmentRepository.save(new Assignment());
+    }
+
+    @AfterEach
+    void tearDown() {
+        compactor.retention = retention;
+        compactor.chunkSize = chunkSize;
+    }
+
+    @Test
+    void latestPaperIsCompactedOnceSuperseded() {
+        Student first = student("compactor-s1");
+        Student second = student("compactor-s2");
+        Paper oldest = paper(first, 1);
+        // only the papers of the test are after the watermark
+        watermarkRepository.save(new Watermark("paper-history", new Timestamp(0), oldest.getId() - 1));
+        Paper held = paper(first, 2);
+        paper(second, 3);
+        Paper compactable = paper(second, 4);
+        paper(second, 5);
+        entityManager.flush();
+
+        // the current paper of the first student is skipped, the watermark must not pass it
+        Assertions.assertEquals(1, compactor.compact());
+        Assertions.assertFalse(paperRepository.existsById(compactable.getId()));
+        Assertions.assertTrue(paperRepository.existsById(held.getId()));
+
+        paper(first, 6);
+        entityManager.flush();
+
+        Assertions.assertEquals(1, compactor.compact());
+        Assertions.assertFalse(paperRepository.existsById(held.getId()));
+    }
+
+    private Student student(String id) {
+        Student student = new Student();
+        student.setId(id);
+        student.setFirstName("first");
+        student.setLastName("last");
+        student.setEmail(id + "@studenti.polito.it");
+        return studentRepository.save(student);
+    }
+
+    /**
+     * a status change showing the same image, published the given minutes after an old instant
+     */
+    private Paper paper(Student student, int minutes) {
+        Paper paper = Paper.detached(new Timestamp(1600000000000L + minutes * 60000L), PaperStatus.READ, false, image, student, assignment);
+        paperRepository.save(paper);
+        latestPaperRepository.moveTo(paper);
+        return paper;
+    }
+}
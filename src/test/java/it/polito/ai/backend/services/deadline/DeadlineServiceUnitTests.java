@@ -0,0 +1,154 @@
+package it.polito.ai.backend.services.deadline;
+
+import it.polito.ai.backend.entities.Deadline;
+import it.polito.ai.backend.entities.DeadlineId;
+import it.polito.ai.backend.entities.DeadlineType;
+import it.polito.ai.backend.repositories.DeadlineRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.data.domain.Pageable;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+public class DeadlineServiceUnitTests {
+
+    static final DeadlineId ID = new DeadlineId(DeadlineType.ASSIGNMENT_EXPIRY, "1");
+    static final long TIMEOUT = 3000;
+
+    DeadlineServiceImpl deadlineService;
+    DeadlineRepository deadlineRepository;
+    DeadlineHandler handler;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        deadlineRepository = Mockito.mock(DeadlineRepository.class);
+        handler = Mockito.mock(DeadlineHandler.class);
+        Mockito.when(handler.getType()).thenReturn(DeadlineType.ASSIGNMENT_EXPIRY);
+        ObjectProvider<DeadlineHandler> handlers = Mockito.mock(ObjectProvider.class);
+        Mockito.when(handlers.stream()).thenAnswer(invocation -> Stream.of(handler));
+
+        deadlineService = new DeadlineServiceImpl();
+        deadlineService.deadlineRepository = deadlineRepository;
+        deadlineService.handlers = handlers;
+        deadlineService.transactionTemplate = new TransactionTemplate(Mockito.mock(PlatformTransactionManager.class));
+        deadlineService.horizon = Duration.ofMinutes(15);
+        deadlineService.threads = 1;
+        deadlineService.batchSize = 10;
+        deadlineService.retryDelay = Duration.ofHours(1);
+        deadlineService.maxAttempts = 3;
+        deadlineService.init();
+    }
+
+    @AfterEach
+    void tearDown() {
+        deadlineService.destroy();
+    }
+
+    @Test
+    void loadFiresOverdueDeadlines() {
+        Deadline deadline = stored(-60000, 0);
+
+        Assertions.assertEquals(1, deadlineService.load());
+
+        Mockito.verify(handler, Mockito.timeout(TIMEOUT)).expire("1");
+        Mockito.verify(deadlineRepository, Mockito.timeout(TIMEOUT)).deleteIfDue(ID.getType(), ID.getTarget(), deadline.getDue());
+    }
+
+    @Test
+    void loadSkipsStartedTimers() {
+        stored(60000, 0);
+
+        Assertions.assertEquals(1, deadlineService.load());
+        Assertions.assertEquals(0, deadlineService.load());
+    }
+
+    @Test
+    void handledDeadlineIsNotFiredAgain() {
+        stored(-60000, 0);
+        // removed by another instance after the load
+        Mockito.when(deadlineRepository.findById(ID)).thenReturn(Optional.empty());
+
+        deadlineService.load();
+
+        Mockito.verify(deadlineRepository, Mockito.timeout(TIMEOUT)).findById(ID);
+        Mockito.verify(handler, Mockito.after(500).never()).expire(Mockito.any());
+    }
+
+    @Test
+    void movedDeadlineIsRearmed() {
+        stored(-60000, 0);
+        // moved a little forward after its timer had started
+        Deadline moved = Deadline.builder().id(ID).due(new Timestamp(System.currentTimeMillis() + 500)).build();
+        Mockito.when(deadlineRepository.findById(ID)).thenReturn(Optional.of(moved));
+
+        deadlineService.load();
+
+        Mockito.verify(deadlineRepository, Mockito.timeout(TIMEOUT).times(2)).findById(ID);
+        Mockito.verify(handler, Mockito.timeout(TIMEOUT)).expire("1");
+        Mockito.verify(deadlineRepository, Mockito.timeout(TIMEOUT)).deleteIfDue(ID.getType(), ID.getTarget(), moved.getDue());
+    }
+
+    @Test
+    void failedDeadlineIsPostponed() {
+        Deadline deadline = stored(-60000, 1);
+        Mockito.doThrow(new IllegalStateException("failed")).when(handler).expire("1");
+        Mockito.when(deadlineRepository.postponeIfDue(Mockito.any(), Mockito.any(), Mockito.any(), Mockito.any(), Mockito.anyInt())).thenReturn(1);
+        long before = System.currentTimeMillis();
+
+        deadlineService.load();
+
+        // the second failure waits twice the retry delay
+        Mockito.verify(deadlineRepository, Mockito.timeout(TIMEOUT)).postponeIfDue(Mockito.eq(ID.getType()), Mockito.eq(ID.getTarget()), Mockito.eq(deadline.getDue()),
+                Mockito.argThat(next -> next.getTime() >= before + 2 * 3600000L), Mockito.eq(2));
+        Mockito.verify(deadlineRepository, Mockito.never()).deleteIfDue(Mockito.any(), Mockito.any(), Mockito.any());
+        Mockito.verify(handler, Mockito.after(500).times(1)).expire("1");
+    }
+
+    @Test
+    void failedDeadlineIsKeptAfterLastAttempt() {
+        Deadline deadline = stored(-60000, 2);
+        Mockito.doThrow(new IllegalStateException("failed")).when(handler).expire("1");
+
+        deadlineService.load();
+
+        Mockito.verify(deadlineRepository, Mockito.timeout(TIMEOUT)).failIfDue(ID.getType(), ID.getTarget(), deadline.getDue(), 3);
+        Mockito.verify(deadlineRepository, Mockito.never()).deleteIfDue(Mockito.any(), Mockito.any(), Mockito.any());
+        Mockito.verify(deadlineRepository, Mockito.never()).postponeIfDue(Mockito.any(), Mockito.any(), Mockito.any(), Mockito.any(), Mockito.anyInt());
+    }
+
+    @Test
+    void replayedDeadlineStartsOver() {
+        Deadline failed = Deadline.builder().id(ID).due(new Timestamp(System.currentTimeMillis() - 60000)).attempts(3).failed(true).build();
+        Mockito.when(deadlineRepository.findAllByFailedTrue()).thenReturn(Collections.singletonList(failed));
+        Mockito.when(deadlineRepository.save(Mockito.any())).thenAnswer(invocation -> {
+            Mockito.when(deadlineRepository.findById(ID)).thenReturn(Optional.of(invocation.getArgument(0)));
+            return invocation.getArgument(0);
+        });
+
+        Assertions.assertEquals(1, deadlineService.replayFailed());
+
+        Mockito.verify(deadlineRepository).save(Mockito.argThat(d -> !d.isFailed() && d.getAttempts() == 0 && d.getDue().equals(failed.getDue())));
+        Mockito.verify(handler, Mockito.timeout(TIMEOUT)).expire("1");
+    }
+
+    /**
+     * a deadline due the given millis from now, returned by the load and by the lookup when it fires
+     */
+    private Deadline stored(long fromNow, int attempts) {
+        Deadline deadline = Deadline.builder().id(ID).due(new Timestamp(System.currentTimeMillis() + fromNow)).attempts(attempts).build();
+        Mockito.when(deadlineRepository.findAllByFailedFalseAndDueBeforeOrderByDue(Mockito.any(), Mockito.any(Pageable.class))).thenReturn(Collections.singletonList(deadline));
+        Mockito.when(deadlineRepository.findById(ID)).thenReturn(Optional.of(deadline));
+        return deadline;
+    }
+}
@@ -0,0 +1,214 @@
+package it.polito.ai.backend.services.image;
+
+import it.polito.ai.backend.entities.Image;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.mockito.Mockito;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.core.io.InputStreamSource;
+import org.springframework.util.StreamUtils;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicReference;
+
+public class ImageIngestServiceUnitTests {
+
+    /**
+     * colours of the quadrants of the stored fixture: top left, top right, bottom left, bottom right
+     */
+    private static final Color TL = Color.RED;
+    private static final Color TR = Color.GREEN;
+    private static final Color BL = Color.BLUE;
+    private static final Color BR = Color.YELLOW;
+
+    /**
+     * for each exif orientation, the stored quadrants shown at the top left and at the top right
+     */
+    private static final Color[][] DISPLAYED = {
+            null,
+            {TL, TR},
+            {TR, TL},
+            {BR, BL},
+            {BL, BR},
+            {TL, BL},
+            {BL, TL},
+            {BR, TR},
+            {TR, BR},
+    };
+
+    ImageIngestServiceImpl imageIngestService;
+    AtomicReference<byte[]> stored;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        stored = new AtomicReference<>();
+        ImageService imageService = Mockito.mock(ImageService.class);
+        Mockito.when(imageService.store(Mockito.any())).thenAnswer(invocation -> {
+            InputStreamSource source = invocation.getArgument(0);
+            stored.set(StreamUtils.copyToByteArray(source.getInputStream()));
+            return Image.builder().id("image").build();
+        });
+        imageIngestService = new ImageIngestServiceImpl();
+        imageIngestService.imageService = imageService;
+        imageIngestService.maxDimension = 32;
+        imageIngestService.quality = 0.9f;
+        imageIngestService.maxConcurrent = 1;
+        imageIngestService.originalDir = "";
+        imageIngestService.init();
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {1, 2, 3, 4, 5, 6, 7, 8})
+    void ingestAppliesOrientation(int orientation) throws IOException {
+        imageIngestService.ingest(new ByteArrayResource(withOrientation(fixture(), orientation, false)));
+
+        BufferedImage result = ImageIO.read(new ByteArrayInputStream(stored.get()));
+        // 64x32 scaled down to 32 on the longest side, swapped by the orientations that rotate
+        boolean swap = orientation >= 5;
+        Assertions.assertEquals(swap ? 16 : 32, result.getWidth());
+        Assertions.assertEquals(swap ? 32 : 16, result.getHeight());
+        Assertions.assertEquals(DISPLAYED[orientation][0], quadrant(result, false));
+        Assertions.assertEquals(DISPLAYED[orientation][1], quadrant(result, true));
+    }
+
+    @Test
+    void ingestReadsLittleEndianExif() throws IOException {
+        imageIngestService.ingest(new ByteArrayResource(withOrientation(fixture(), 6, true)));
+
+        BufferedImage result = ImageIO.read(new ByteArrayInputStream(stored.get()));
+        Assertions.assertEquals(16, result.getWidth());
+        Assertions.assertEquals(DISPLAYED[6][0], quadrant(result, false));
+    }
+
+    @Test
+    void ingestDropsMetadata() throws IOException {
+        imageIngestService.ingest(new ByteArrayResource(withOrientation(fixture(), 6, false)));
+
+        try (ImageInputStream stream = ImageIO.createImageInputStream(new ByteArrayInputStream(stored.get()))) {
+            ImageReader reader = ImageIO.getImageReaders(stream).next();
+            reader.setInput(stream);
+            // the orientation has been applied, the result must not be rotated again
+            Assertions.assertEquals(1, ImageIngestServiceImpl.orientation(reader.getImageMetadata(0)));
+            reader.dispose();
+        }
+    }
+
+    @Test
+    void ingestKeepsSmallImages() throws IOException {
+        imageIngestService.maxDimension = 2048;
+        imageIngestService.ingest(new ByteArrayResource(withOrientation(fixture(), 1, false)));
+
+        BufferedImage result = ImageIO.read(new ByteArrayInputStream(stored.get()));
+        Assertions.assertEquals(64, result.getWidth());
+        Assertions.assertEquals(32, result.getHeight());
+    }
+
+    @Test
+    void ingestRejectsUnreadable() {
+        Assertions.assertThrows(IOException.class,
+                () -> imageIngestService.ingest(new ByteArrayResource("not an image".getBytes())));
+    }
+
+    private static byte[] fixture() throws IOException {
+        BufferedImage image = new BufferedImage(64, 32, BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = image.createGraphics();
+        graphics.setColor(TL);
+        graphics.fillRect(0, 0, 32, 16);
+        graphics.setColor(TR);
+        graphics.fillRect(32, 0, 32, 16);
+        graphics.setColor(BL);
+        graphics.fillRect(0, 16, 32, 16);
+        graphics.setColor(BR);
+        graphics.fillRect(32, 16, 32, 16);
+        graphics.dispose();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(image, "jpg", out);
+        return out.toByteArray();
+    }
+
+    /**
+     * inserts an APP1 exif segment with only the orientation after the jfif header
+     */
+    private static byte[] withOrientation(byte[] jpeg, int orientation, boolean little) {
+        ByteArrayOutputStream tiff = new ByteArrayOutputStream();
+        tiff.write(little ? 'I' : 'M');
+        tiff.write(little ? 'I' : 'M');
+        writeShort(tiff, 42, little);
+        writeInt(tiff, 8, little);
+        writeShort(tiff, 1, little);
+        writeShort(tiff, 0x0112, little);
+        writeShort(tiff, 3, little);
+        writeInt(tiff, 1, little);
+        writeShort(tiff, orientation, little);
+        writeShort(tiff, 0, little);
+        writeInt(tiff, 0, little);
+        byte[] body = tiff.toByteArray();
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        int app0 = 4 + (((jpeg[4] & 0xff) << 8) | (jpeg[5] & 0xff));
+        out.write(jpeg, 0, app0);
+        out.write(0xff);
+        out.write(0xe1);
+        writeShort(out, 2 + 6 + body.length, false);
+        out.write('E');
+        out.write('x');
+        out.write('i');
+        out.write('f');
+        out.write(0);
+        out.write(0);
+        out.write(body, 0, body.length);
+        out.write(jpeg, app0, jpeg.length - app0);
+        return out.toByteArray();
+    }
+
+    private static void writeShort(ByteArrayOutputStream out, int value, boolean little) {
+        if (little) {
+            out.write(value & 0xff);
+            out.write((value >> 8) & 0xff);
+        } else {
+            out.write((value >> 8) & 0xff);
+            out.write(value & 0xff);
+        }
+    }
+
+    private static void writeInt(ByteArrayOutputStream out, int value, boolean little) {
+        if (little) {
+            writeShort(out, value & 0xffff, true);
+            writeShort(out, value >>> 16, true);
+        } else {
+            writeShort(out, value >>> 16, false);
+            writeShort(out, value & 0xffff, false);
+        }
+    }
+
+    /**
+     * the fixture colour closest to the centre of the top left or top right quadrant, jpeg is lossy
+     */
+    private static Color quadrant(BufferedImage image, boolean right) {
+        int x = right ? image.getWidth() * 3 / 4 : image.getWidth() / 4;
+        int y = image.getHeight() / 4;
+        Color actual = new Color(image.getRGB(x, y));
+        Color closest = null;
+        int best = Integer.MAX_VALUE;
+        for (Color candidate : new Color[]{TL, TR, BL, BR}) {
+            int distance = Math.abs(candidate.getRed() - actual.getRed())
+                    + Math.abs(candidate.getGreen() - actual.getGreen())
+                    + Math.abs(candidate.getBlue() - actual.getBlue());
+            if (distance < best) {
+                best = distance;
+                closest = candidate;
+            }
+        }
+        return closest;
+    }
+}
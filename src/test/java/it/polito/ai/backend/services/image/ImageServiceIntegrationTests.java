@@ -0,0 +1,129 @@
+package it.polito.ai.backend.services.image;
+
+import it.polito.ai.backend.dtos.PaperStatus;
+import it.polito.ai.backend.entities.*;
+import it.polito.ai.backend.repositories.*;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.AdditionalAnswers;
+import org.mockito.Mockito;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.util.AopTestUtils;
+
+import javax.transaction.Transactional;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+
+@SpringBootTest
+@Transactional
+@ActiveProfiles("dev")
+public class ImageServiceIntegrationTests {
+
+    @Autowired
+    ImageService imageService;
+    @Autowired
+    ImageRepository imageRepository;
+    @Autowired
+    PaperRepository paperRepository;
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+
+    ImageServiceImpl target;
+
+    @BeforeEach
+    void setUp() {
+        target = AopTestUtils.getTargetObject(imageService);
+    }
+
+    @AfterEach
+    void tearDown() {
+        target.imageRepository = imageRepository;
+    }
+
+    @Test
+    void sameBytesStoredOnce() throws IOException {
+        Image first = imageService.store(content("same bytes"));
+        Image second = imageService.store(content("same bytes"));
+        Image other = imageService.store(content("other bytes"));
+
+        Assertions.assertEquals(first.getId(), second.getId());
+        Assertions.assertNotEquals(first.getId(), other.getId());
+        Assertions.assertEquals(1, rows(first.getId()));
+        Assertions.assertEquals(0, refCount(first.getId()));
+    }
+
+    @Test
+    void concurrentStoreOfSameBytesIsSkipped() throws IOException {
+        Image stored = imageService.store(content("uploaded twice"));
+        // the other upload inserted the row after this one checked for it
+        ImageRepository late = Mockito.mock(ImageRepository.class, AdditionalAnswers.delegatesTo(imageRepository));
+        Mockito.doReturn(false).when(late).existsById(Mockito.any());
+        target.imageRepository = late;
+
+        Image again = imageService.store(content("uploaded twice"));
+
+        Assertions.assertEquals(stored.getId(), again.getId());
+        Assertions.assertEquals(1, rows(stored.getId()));
+        Assertions.assertEquals(14, imageRepository.findSize(stored.getId()).orElse(0L));
+    }
+
+    @Test
+    void releasedToZeroIsRemoved() throws IOException {
+        Image image = imageService.store(content("referenced"));
+        imageService.retain(image);
+        imageService.retain(image.getId(), 2);
+        Assertions.assertEquals(3, refCount(image.getId()));
+
+        imageService.release(image);
+        Assertions.assertEquals(2, refCount(image.getId()));
+        imageService.release(image, 2);
+
+        Assertions.assertEquals(0, rows(image.getId()));
+    }
+
+    @Test
+    void releaseKeepsContentStillPointedTo() throws IOException {
+        Image image = imageService.store(content("still used"));
+        imageService.retain(image);
+        // a paper saved without taking its reference
+        Paper paper = new Paper();
+        paper.setPublished(new Timestamp(System.currentTimeMillis()));
+        paper.setStatus(PaperStatus.DELIVERED);
+        paper.setImage(image);
+        paperRepository.saveAndFlush(paper);
+
+        imageService.release(image);
+
+        Assertions.assertEquals(1, rows(image.getId()));
+        Assertions.assertEquals(0, refCount(image.getId()));
+    }
+
+    @Test
+    void releaseNeverGoesBelowZero() throws IOException {
+        Image image = imageService.store(content("released too much"));
+        imageService.retain(image);
+
+        imageService.release(image, 2);
+
+        Assertions.assertEquals(1, refCount(image.getId()));
+    }
+
+    private int rows(String imageId) {
+        return jdbcTemplate.queryForObject("select count(*) from image where id=?", Integer.class, imageId);
+    }
+
+    private int refCount(String imageId) {
+        return jdbcTemplate.queryForObject("select ref_count from image where id=?", Integer.class, imageId);
+    }
+
+    private static ByteArrayResource content(String text) {
+        return new ByteArrayResource(text.getBytes(StandardCharsets.US_ASCII));
+    }
+}
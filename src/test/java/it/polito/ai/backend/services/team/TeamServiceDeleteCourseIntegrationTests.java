@@ -0,0 +1,92 @@
+package it.polito.ai.backend.services.team;
+
+import it.polito.ai.backend.dtos.PaperStatus;
+import it.polito.ai.backend.entities.*;
+import it.polito.ai.backend.repositories.*;
+import it.polito.ai.backend.services.image.ImageService;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.SpyBean;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.context.ActiveProfiles;
+
+import javax.persistence.EntityManager;
+import javax.transaction.Transactional;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+
+@SpringBootTest
+@Transactional
+@ActiveProfiles("dev")
+@WithMockUser(username = "delete-d1", roles = "TEACHER")
+public class TeamServiceDeleteCourseIntegrationTests {
+
+    @Autowired
+    TeamService teamService;
+    @Autowired
+    CourseRepository courseRepository;
+    @Autowired
+    StudentRepository studentRepository;
+    @Autowired
+    TeacherRepository teacherRepository;
+    @Autowired
+    EntityManager entityManager;
+    @SpyBean
+    ImageService imageService;
+
+    @Test
+    void imagesReleasedOncePerImage() throws IOException {
+        Course course = new Course();
+        course.setId("delete-course");
+        course.setName("delete course");
+        course.setMin(1);
+        course.setMax(5);
+        course = courseRepository.save(course);
+        Teacher teacher = new Teacher();
+        teacher.setId("delete-d1");
+        teacher.setFirstName("first");
+        teacher.setLastName("last");
+        teacher.addCourse(course);
+        teacherRepository.save(teacher);
+
+        Image text = imageService.store(new ByteArrayResource("assignment text".getBytes(StandardCharsets.US_ASCII)));
+        Image solution = imageService.store(new ByteArrayResource("solution".getBytes(StandardCharsets.US_ASCII)));
+        Assignment assignment = new Assignment();
+        assignment.setPublished(new Timestamp(System.currentTimeMillis()));
+        assignment.setExpired(new Timestamp(System.currentTimeMillis() + 3600000));
+        assignment.setImage(text);
+        course.addAssignment(assignment);
+        entityManager.persist(assignment);
+        for (String studentId : new String[]{"delete-s1", "delete-s2"}) {
+            Student student = new Student();
+            student.setId(studentId);
+            student.setFirstName("first");
+            student.setLastName("last");
+            // every student starts from the assignment text
+            paper(assignment, studentRepository.save(student), PaperStatus.NULL, text);
+        }
+        paper(assignment, studentRepository.getOne("delete-s1"), PaperStatus.DELIVERED, solution);
+        entityManager.flush();
+        entityManager.clear();
+
+        Assertions.assertTrue(teamService.deleteCourse("delete-course"));
+        entityManager.flush();
+
+        Mockito.verify(imageService).release(text.getId(), 3);
+        Mockito.verify(imageService).release(solution.getId(), 1);
+        Mockito.verify(imageService, Mockito.never()).release(Mockito.any(Image.class));
+        Assertions.assertFalse(courseRepository.existsById("delete-course"));
+    }
+
+    private void paper(Assignment assignment, Student student, PaperStatus status, Image image) {
+        Paper paper = Paper.detached(new Timestamp(System.currentTimeMillis()), status, true, image, student, assignment);
+        assignment.getPapers().add(paper);
+        student.getPapers().add(paper);
+        entityManager.persist(paper);
+    }
+}
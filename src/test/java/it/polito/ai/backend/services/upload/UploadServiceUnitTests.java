@@ -0,0 +1,210 @@
+package it.polito.ai.backend.services.upload;
+
+import it.polito.ai.backend.dtos.UploadSessionDTO;
+import it.polito.ai.backend.entities.UploadSession;
+import it.polito.ai.backend.repositories.UploadSessionRepository;
+import it.polito.ai.backend.services.Utils;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mockito;
+import org.modelmapper.ModelMapper;
+import org.springframework.util.StreamUtils;
+import org.springframework.util.unit.DataSize;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.util.*;
+import java.util.stream.Collectors;
+
+public class UploadServiceUnitTests {
+
+    private static final Long ASSIGNMENT = 1L;
+    private static final String STUDENT = "s1";
+
+    @TempDir
+    Path dir;
+
+    UploadServiceImpl uploadService;
+    Map<String, UploadSession> sessions;
+    byte[] content;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        sessions = new HashMap<>();
+        UploadSessionRepository repository = Mockito.mock(UploadSessionRepository.class);
+        Mockito.when(repository.save(Mockito.any())).thenAnswer(invocation -> {
+            UploadSession session = invocation.getArgument(0);
+            sessions.put(session.getId(), copy(session));
+            return session;
+        });
+        Mockito.when(repository.findById(Mockito.any()))
+                .thenAnswer(invocation -> Optional.ofNullable(sessions.get(invocation.<String>getArgument(0))).map(UploadServiceUnitTests::copy));
+        Mockito.doAnswer(invocation -> sessions.remove(invocation.<UploadSession>getArgument(0).getId()))
+                .when(repository).delete(Mockito.any());
+        Mockito.when(repository.findAllByCreatedBefore(Mockito.any())).thenAnswer(invocation -> sessions.values().stream()
+                .filter(s -> s.getCreated().before(invocation.getArgument(0)))
+                .map(UploadServiceUnitTests::copy)
+                .collect(Collectors.toList()));
+
+        uploadService = new UploadServiceImpl();
+        uploadService.uploadSessionRepository = repository;
+        uploadService.modelMapper = new ModelMapper();
+        uploadService.dir = dir.toString();
+        uploadService.expiration = Duration.ofHours(24);
+        uploadService.maxSize = DataSize.ofKilobytes(64);
+        uploadService.init();
+
+        content = new byte[10000];
+        new Random(1).nextBytes(content);
+    }
+
+    @Test
+    void appendInChunks() throws IOException {
+        String id = uploadService.open(ASSIGNMENT, STUDENT, content.length).getId();
+
+        Assertions.assertEquals(4000, uploadService.append(ASSIGNMENT, STUDENT, id, 0, chunk(0, 4000)).getReceived());
+        Assertions.assertEquals(10000, uploadService.append(ASSIGNMENT, STUDENT, id, 4000, chunk(4000, 10000)).getReceived());
+
+        Assertions.assertArrayEquals(content, read(id));
+    }
+
+    @Test
+    void appendRejectsOffsetAhead() throws IOException {
+        String id = uploadService.open(ASSIGNMENT, STUDENT, content.length).getId();
+        uploadService.append(ASSIGNMENT, STUDENT, id, 0, chunk(0, 4000));
+
+        Assertions.assertThrows(UploadConflictException.class,
+                () -> uploadService.append(ASSIGNMENT, STUDENT, id, 5000, chunk(5000, 10000)));
+        Assertions.assertEquals(4000, sessions.get(id).getReceived());
+    }
+
+    @Test
+    void appendRejectsOverlappingOffset() throws IOException {
+        String id = uploadService.open(ASSIGNMENT, STUDENT, content.length).getId();
+        uploadService.append(ASSIGNMENT, STUDENT, id, 0, chunk(0, 4000));
+
+        // a chunk sent again after its response was lost
+        Assertions.assertThrows(UploadConflictException.class,
+                () -> uploadService.append(ASSIGNMENT, STUDENT, id, 2000, chunk(2000, 6000)));
+        Assertions.assertEquals(4000, sessions.get(id).getReceived());
+
+        uploadService.append(ASSIGNMENT, STUDENT, id, 4000, chunk(4000, 10000));
+        Assertions.assertArrayEquals(content, read(id));
+    }
+
+    @Test
+    void appendResumesAfterBrokenConnection() throws IOException {
+        String id = uploadService.open(ASSIGNMENT, STUDENT, content.length).getId();
+
+        Assertions.assertThrows(IOException.class,
+                () -> uploadService.append(ASSIGNMENT, STUDENT, id, 0, broken(0, 3000)));
+        long received = uploadService.getSession(ASSIGNMENT, STUDENT, id).map(UploadSessionDTO::getReceived).orElse(-1L);
+        Assertions.assertEquals(3000, received);
+
+        uploadService.append(ASSIGNMENT, STUDENT, id, received, chunk((int) received, 10000));
+        Assertions.assertArrayEquals(content, read(id));
+    }
+
+    @Test
+    void appendRejectsBytesBeyondSize() throws IOException {
+        String id = uploadService.open(ASSIGNMENT, STUDENT, 6000).getId();
+        uploadService.append(ASSIGNMENT, STUDENT, id, 0, chunk(0, 4000));
+
+        Assertions.assertThrows(UploadSizeException.class,
+                () -> uploadService.append(ASSIGNMENT, STUDENT, id, 4000, chunk(4000, 10000)));
+        Assertions.assertEquals(4000, sessions.get(id).getReceived());
+        Assertions.assertEquals(4000, Files.size(dir.resolve(id + ".part")));
+    }
+
+    @Test
+    void openRejectsTooLarge() {
+        Assertions.assertThrows(UploadSizeException.class,
+                () -> uploadService.open(ASSIGNMENT, STUDENT, DataSize.ofKilobytes(65).toBytes()));
+    }
+
+    @Test
+    void getContentRejectsMissingBytes() throws IOException {
+        String id = uploadService.open(ASSIGNMENT, STUDENT, content.length).getId();
+        uploadService.append(ASSIGNMENT, STUDENT, id, 0, chunk(0, 9999));
+
+        Assertions.assertThrows(UploadConflictException.class, () -> uploadService.getContent(ASSIGNMENT, STUDENT, id));
+    }
+
+    @Test
+    void sessionOfAnotherStudentNotFound() throws IOException {
+        String id = uploadService.open(ASSIGNMENT, STUDENT, content.length).getId();
+
+        Assertions.assertThrows(UploadSessionNotFoundException.class,
+                () -> uploadService.append(ASSIGNMENT, "s2", id, 0, chunk(0, 10000)));
+        Assertions.assertFalse(uploadService.getSession(2L, STUDENT, id).isPresent());
+    }
+
+    @Test
+    void deleteExpiredRemovesOldSessionsAndFiles() throws IOException {
+        String expired = uploadService.open(ASSIGNMENT, STUDENT, content.length).getId();
+        String current = uploadService.open(ASSIGNMENT, STUDENT, content.length).getId();
+        sessions.get(expired).setCreated(new Timestamp(Utils.getNow().getTime() - Duration.ofHours(25).toMillis()));
+
+        Assertions.assertEquals(1, uploadService.deleteExpired());
+
+        Assertions.assertFalse(sessions.containsKey(expired));
+        Assertions.assertFalse(Files.exists(dir.resolve(expired + ".part")));
+        Assertions.assertTrue(sessions.containsKey(current));
+        Assertions.assertTrue(Files.exists(dir.resolve(current + ".part")));
+    }
+
+    private InputStream chunk(int from, int to) {
+        return new ByteArrayInputStream(content, from, to - from);
+    }
+
+    /**
+     * gives the bytes up to failAt, then fails as a dropped connection
+     */
+    private InputStream broken(int from, int failAt) {
+        return new InputStream() {
+            final InputStream delegate = chunk(from, failAt);
+
+            @Override
+            public int read() throws IOException {
+                int b = delegate.read();
+                if (b == -1) {
+                    throw new IOException("connection reset");
+                }
+                return b;
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                int n = delegate.read(b, off, len);
+                if (n == -1) {
+                    throw new IOException("connection reset");
+                }
+                return n;
+            }
+        };
+    }
+
+    private byte[] read(String id) throws IOException {
+        try (InputStream in = uploadService.getContent(ASSIGNMENT, STUDENT, id).getInputStream()) {
+            return StreamUtils.copyToByteArray(in);
+        }
+    }
+
+    private static UploadSession copy(UploadSession session) {
+        return UploadSession.builder()
+                .id(session.getId())
+                .studentId(session.getStudentId())
+                .assignmentId(session.getAssignmentId())
+                .size(session.getSize())
+                .received(session.getReceived())
+                .created(session.getCreated())
+                .build();
+    }
+}